@@ -0,0 +1,256 @@
+package com.mangareader.client;
+
+import com.mangareader.exception.UpstreamUnavailableException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Circuit breakers for the MangaDex API and /at-home/server.
+ *
+ * Each endpoint keeps the outcomes of its last window-size calls. Once enough of them
+ * failed (I/O errors, timeouts, 5xx) or were slow, the breaker opens and calls fail
+ * at once with an {@link UpstreamUnavailableException} instead of queueing behind a
+ * struggling upstream. After open-seconds it lets a few probe calls through: if they
+ * all succeed it closes again, if one fails it reopens.
+ *
+ * Images are left out: their failures are per @Home node and handled by AtHomeNodeHealth.
+ */
+@Component
+public class UpstreamCircuitBreaker {
+
+    private static final Logger logger = LoggerFactory.getLogger(UpstreamCircuitBreaker.class);
+
+    /**
+     * Breaker states; the ordinal is published as the upstream.circuit.state gauge
+     */
+    public enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    private final Map<UpstreamEndpoint, Breaker> breakers = new EnumMap<>(UpstreamEndpoint.class);
+    private final int windowSize;
+    private final int minimumCalls;
+    private final int failureRatePercent;
+    private final long slowCallNanos;
+    private final int slowRatePercent;
+    private final long openNanos;
+    private final int probeCalls;
+
+    public UpstreamCircuitBreaker(MeterRegistry meterRegistry,
+            @Value("${app.upstream.circuit-breaker.enabled:true}") boolean enabled,
+            @Value("${app.upstream.circuit-breaker.window-size:20}") int windowSize,
+            @Value("${app.upstream.circuit-breaker.minimum-calls:10}") int minimumCalls,
+            @Value("${app.upstream.circuit-breaker.failure-rate-percent:50}") int failureRatePercent,
+            @Value("${app.upstream.circuit-breaker.slow-call-ms:5000}") long slowCallMs,
+            @Value("${app.upstream.circuit-breaker.slow-rate-percent:80}") int slowRatePercent,
+            @Value("${app.upstream.circuit-breaker.open-seconds:30}") long openSeconds,
+            @Value("${app.upstream.circuit-breaker.probe-calls:3}") int probeCalls) {
+        this.windowSize = Math.max(1, windowSize);
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, this.windowSize));
+        this.failureRatePercent = failureRatePercent;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(slowCallMs);
+        this.slowRatePercent = slowRatePercent;
+        this.openNanos = TimeUnit.SECONDS.toNanos(openSeconds);
+        this.probeCalls = Math.max(1, probeCalls);
+
+        if (enabled) {
+            for (UpstreamEndpoint endpoint : new UpstreamEndpoint[] {UpstreamEndpoint.API, UpstreamEndpoint.AT_HOME}) {
+                breakers.put(endpoint, new Breaker(endpoint, meterRegistry));
+            }
+        }
+    }
+
+    /**
+     * Fail fast if the endpoint's breaker is open, without taking a probe slot.
+     * Checked before a call queues for a rate limit token.
+     */
+    public void checkNotOpen(UpstreamEndpoint endpoint) throws UpstreamUnavailableException {
+        Breaker breaker = breakers.get(endpoint);
+        if (breaker != null) {
+            breaker.checkNotOpen();
+        }
+    }
+
+    /**
+     * Permission to send a call now. While half-open only probe-calls calls are let
+     * through at a time; every permitted call must be followed by {@link #onResult}.
+     */
+    public void acquirePermission(UpstreamEndpoint endpoint) throws UpstreamUnavailableException {
+        Breaker breaker = breakers.get(endpoint);
+        if (breaker != null) {
+            breaker.acquirePermission();
+        }
+    }
+
+    /**
+     * Record the outcome of a permitted call
+     *
+     * @param failed true for I/O errors, timeouts and 5xx responses
+     * @param nanos  time from sending the call to the response headers
+     */
+    public void onResult(UpstreamEndpoint endpoint, boolean failed, long nanos) {
+        Breaker breaker = breakers.get(endpoint);
+        if (breaker != null) {
+            breaker.onResult(failed, nanos >= slowCallNanos);
+        }
+    }
+
+    public State getState(UpstreamEndpoint endpoint) {
+        Breaker breaker = breakers.get(endpoint);
+        return breaker != null ? breaker.currentState() : State.CLOSED;
+    }
+
+    /**
+     * State and recent outcomes per breaker, for status pages
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (Breaker breaker : breakers.values()) {
+            result.put(breaker.name, breaker.snapshot());
+        }
+        return result;
+    }
+
+    /**
+     * One endpoint's breaker: a ring of the last windowSize outcomes and the state machine
+     */
+    private class Breaker {
+        final String name;
+        final boolean[] failures = new boolean[windowSize];
+        final boolean[] slow = new boolean[windowSize];
+        int calls;
+        int next;
+        int failureCount;
+        int slowCount;
+
+        State state = State.CLOSED;
+        long openedAt;
+        int probesInFlight;
+        int probesSucceeded;
+
+        final AtomicLong rejected = new AtomicLong();
+        final AtomicLong opened = new AtomicLong();
+
+        Breaker(UpstreamEndpoint endpoint, MeterRegistry meterRegistry) {
+            this.name = endpoint.name().toLowerCase().replace('_', '-');
+            Gauge.builder("upstream.circuit.state", this, breaker -> breaker.currentState().ordinal())
+                    .tag("endpoint", name)
+                    .register(meterRegistry);
+            FunctionCounter.builder("upstream.circuit.rejected", rejected, AtomicLong::get)
+                    .tag("endpoint", name).register(meterRegistry);
+        }
+
+        synchronized State currentState() {
+            if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+                state = State.HALF_OPEN;
+                probesInFlight = 0;
+                probesSucceeded = 0;
+                logger.info("Circuit breaker for MangaDex {} half-open, probing", name);
+            }
+            return state;
+        }
+
+        synchronized void checkNotOpen() throws UpstreamUnavailableException {
+            if (currentState() == State.OPEN) {
+                throw reject();
+            }
+        }
+
+        synchronized void acquirePermission() throws UpstreamUnavailableException {
+            State current = currentState();
+            if (current == State.OPEN) {
+                throw reject();
+            }
+            if (current == State.HALF_OPEN) {
+                if (probesInFlight + probesSucceeded >= probeCalls) {
+                    throw reject();
+                }
+                probesInFlight++;
+            }
+        }
+
+        synchronized void onResult(boolean failed, boolean wasSlow) {
+            State current = currentState();
+            if (current == State.HALF_OPEN) {
+                probesInFlight = Math.max(0, probesInFlight - 1);
+                if (failed || wasSlow) {
+                    open("a probe call " + (failed ? "failed" : "was slow"));
+                } else if (++probesSucceeded >= probeCalls) {
+                    state = State.CLOSED;
+                    resetWindow();
+                    logger.info("Circuit breaker for MangaDex {} closed", name);
+                }
+                return;
+            }
+            if (current == State.OPEN) {
+                // A call sent before the breaker opened
+                return;
+            }
+
+            if (calls == windowSize) {
+                failureCount -= failures[next] ? 1 : 0;
+                slowCount -= slow[next] ? 1 : 0;
+            } else {
+                calls++;
+            }
+            failures[next] = failed;
+            slow[next] = wasSlow;
+            failureCount += failed ? 1 : 0;
+            slowCount += wasSlow ? 1 : 0;
+            next = (next + 1) % windowSize;
+
+            if (calls >= minimumCalls) {
+                if (failureCount * 100 >= failureRatePercent * calls) {
+                    open(failureCount + " of the last " + calls + " calls failed");
+                } else if (slowCount * 100 >= slowRatePercent * calls) {
+                    open(slowCount + " of the last " + calls + " calls were slow");
+                }
+            }
+        }
+
+        private void open(String reason) {
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+            opened.incrementAndGet();
+            resetWindow();
+            logger.warn("Circuit breaker for MangaDex {} opened for {} s: {}", name,
+                    TimeUnit.NANOSECONDS.toSeconds(openNanos), reason);
+        }
+
+        private void resetWindow() {
+            calls = 0;
+            next = 0;
+            failureCount = 0;
+            slowCount = 0;
+        }
+
+        private UpstreamUnavailableException reject() {
+            rejected.incrementAndGet();
+            long remaining = state == State.OPEN ? openNanos - (System.nanoTime() - openedAt) : 0;
+            return new UpstreamUnavailableException("MangaDex " + name + " is unavailable (circuit breaker open)",
+                    Math.max(1, TimeUnit.NANOSECONDS.toSeconds(remaining)));
+        }
+
+        synchronized Map<String, Object> snapshot() {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("state", currentState().name());
+            result.put("recentCalls", calls);
+            result.put("recentFailures", failureCount);
+            result.put("recentSlowCalls", slowCount);
+            result.put("opened", opened.get());
+            result.put("rejected", rejected.get());
+            return result;
+        }
+    }
+}
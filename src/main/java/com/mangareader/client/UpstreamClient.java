@@ -0,0 +1,414 @@
+package com.mangareader.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mangareader.exception.UpstreamStatusException;
+import com.mangareader.exception.UpstreamUnavailableException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The single HTTP client used for every call to MangaDex: the JSON API, At-Home
+ * lookups, images and @Home reports.
+ *
+ * It wraps one java.net.http client, which keeps a keep-alive connection pool per
+ * host and negotiates HTTP/2 where the server supports it, so concurrent calls to
+ * the same host share (or multiplex over) the same connections. JSON responses are
+ * requested gzip/deflate-compressed and read as bytes. Each {@link UpstreamEndpoint}
+ * has its own timeout and request metrics. Every call first has to get past the
+ * endpoint's {@link UpstreamCircuitBreaker} and take a token from the
+ * {@link UpstreamRateLimiter}.
+ *
+ * With spring.threads.virtual.enabled (Java 21+) the client's own work runs on
+ * virtual threads, like request handling.
+ */
+@Component
+public class UpstreamClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(UpstreamClient.class);
+    private static final String USER_AGENT = "MangaUniversalBackend/1.0";
+
+    private final HttpClient httpClient;
+    private final Executor executor;
+    private final ObjectMapper mapper;
+    private final UpstreamRateLimiter rateLimiter;
+    private final UpstreamCircuitBreaker circuitBreaker;
+
+    private final Map<UpstreamEndpoint, Duration> timeouts = new EnumMap<>(UpstreamEndpoint.class);
+    private final Map<UpstreamEndpoint, EndpointStats> stats = new EnumMap<>(UpstreamEndpoint.class);
+    private final AtomicLong http2Responses = new AtomicLong();
+    private final AtomicLong http1Responses = new AtomicLong();
+
+    public UpstreamClient(ObjectMapper mapper, MeterRegistry meterRegistry, UpstreamRateLimiter rateLimiter,
+            UpstreamCircuitBreaker circuitBreaker,
+            @Value("${app.upstream.connect-timeout-seconds:10}") long connectTimeoutSeconds,
+            @Value("${app.upstream.keep-alive-seconds:300}") long keepAliveSeconds,
+            @Value("${app.upstream.max-idle-connections:64}") int maxIdleConnections,
+            @Value("${app.upstream.timeout.api-seconds:10}") long apiTimeoutSeconds,
+            @Value("${app.upstream.timeout.at-home-seconds:10}") long atHomeTimeoutSeconds,
+            @Value("${app.upstream.timeout.image-seconds:30}") long imageTimeoutSeconds,
+            @Value("${app.upstream.timeout.report-seconds:10}") long reportTimeoutSeconds,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.mapper = mapper;
+        this.rateLimiter = rateLimiter;
+        this.circuitBreaker = circuitBreaker;
+
+        // Pool tuning for java.net.http is only read from system properties, once,
+        // when the first client is created; explicit -D flags take precedence
+        setDefaultProperty("jdk.httpclient.keepalive.timeout", String.valueOf(keepAliveSeconds));
+        setDefaultProperty("jdk.httpclient.connectionPoolSize", String.valueOf(maxIdleConnections));
+
+        this.executor = createExecutor(virtualThreads);
+
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofSeconds(connectTimeoutSeconds))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(executor)
+                .build();
+
+        timeouts.put(UpstreamEndpoint.API, Duration.ofSeconds(apiTimeoutSeconds));
+        timeouts.put(UpstreamEndpoint.AT_HOME, Duration.ofSeconds(atHomeTimeoutSeconds));
+        timeouts.put(UpstreamEndpoint.IMAGE, Duration.ofSeconds(imageTimeoutSeconds));
+        timeouts.put(UpstreamEndpoint.REPORT, Duration.ofSeconds(reportTimeoutSeconds));
+
+        for (UpstreamEndpoint endpoint : UpstreamEndpoint.values()) {
+            stats.put(endpoint, new EndpointStats(endpoint, meterRegistry));
+        }
+        FunctionCounter.builder("upstream.responses.protocol", http2Responses, AtomicLong::get)
+                .tag("version", "HTTP_2").register(meterRegistry);
+        FunctionCounter.builder("upstream.responses.protocol", http1Responses, AtomicLong::get)
+                .tag("version", "HTTP_1_1").register(meterRegistry);
+    }
+
+    /**
+     * Start a request to the given URL with the endpoint's timeout and our User-Agent
+     */
+    public HttpRequest.Builder request(String url, UpstreamEndpoint endpoint) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create(url))
+                .timeout(timeouts.get(endpoint))
+                .header("User-Agent", USER_AGENT);
+    }
+
+    /**
+     * Send a request and return once the response headers arrive. The body is
+     * handled by the given handler; streams must be closed by the caller.
+     */
+    public <T> HttpResponse<T> send(HttpRequest request, UpstreamEndpoint endpoint,
+            HttpResponse.BodyHandler<T> handler) throws IOException {
+        circuitBreaker.checkNotOpen(endpoint);
+        await(rateLimiter.acquire(endpoint, UpstreamPriority.current()));
+        circuitBreaker.acquirePermission(endpoint);
+
+        EndpointStats endpointStats = stats.get(endpoint);
+        endpointStats.active.incrementAndGet();
+        long start = System.nanoTime();
+        String outcome = "IO_ERROR";
+        boolean failed = true;
+
+        try {
+            HttpResponse<T> response = httpClient.send(request, handler);
+            outcome = String.valueOf(response.statusCode());
+            failed = response.statusCode() >= 500;
+            countProtocol(response);
+            rateLimiter.onResponse(endpoint, response);
+            return response;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            outcome = "INTERRUPTED";
+            failed = false;
+            throw new IOException("Upstream request interrupted", e);
+        } finally {
+            long nanos = System.nanoTime() - start;
+            endpointStats.active.decrementAndGet();
+            endpointStats.record(outcome, nanos);
+            circuitBreaker.onResult(endpoint, failed, nanos);
+        }
+    }
+
+    /**
+     * GET a JSON resource and return its (decompressed) body
+     *
+     * @throws UpstreamStatusException if the response is not 2xx
+     */
+    public byte[] getBytes(String url, UpstreamEndpoint endpoint) throws IOException {
+        return getBytes(request(url, endpoint).GET(), endpoint);
+    }
+
+    /**
+     * Send a prepared JSON request and return its (decompressed) body
+     *
+     * @throws UpstreamStatusException if the response is not 2xx
+     */
+    public byte[] getBytes(HttpRequest.Builder builder, UpstreamEndpoint endpoint) throws IOException {
+        return await(getBytesAsync(builder, endpoint));
+    }
+
+    /**
+     * GET a JSON resource without blocking. The future fails with an
+     * {@link UpstreamStatusException} if the response is not 2xx.
+     */
+    public CompletableFuture<byte[]> getBytesAsync(String url, UpstreamEndpoint endpoint) {
+        return getBytesAsync(request(url, endpoint).GET(), endpoint, UpstreamPriority.current());
+    }
+
+    /**
+     * GET a JSON resource without blocking, queued at the given priority rather than
+     * the current thread's; for calls started from async continuations
+     */
+    public CompletableFuture<byte[]> getBytesAsync(String url, UpstreamEndpoint endpoint,
+            UpstreamPriority priority) {
+        return getBytesAsync(request(url, endpoint).GET(), endpoint, priority);
+    }
+
+    /**
+     * Send a prepared JSON request without blocking
+     */
+    public CompletableFuture<byte[]> getBytesAsync(HttpRequest.Builder builder, UpstreamEndpoint endpoint) {
+        return getBytesAsync(builder, endpoint, UpstreamPriority.current());
+    }
+
+    /**
+     * Send a prepared JSON request without blocking, queued at the given priority
+     */
+    public CompletableFuture<byte[]> getBytesAsync(HttpRequest.Builder builder, UpstreamEndpoint endpoint,
+            UpstreamPriority priority) {
+        HttpRequest request = builder
+                .header("Accept", "application/json")
+                .header("Accept-Encoding", "gzip, deflate")
+                .build();
+
+        EndpointStats endpointStats = stats.get(endpoint);
+        try {
+            circuitBreaker.checkNotOpen(endpoint);
+        } catch (UpstreamUnavailableException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return rateLimiter.acquire(endpoint, priority)
+                .thenCompose(ignored -> {
+                    try {
+                        circuitBreaker.acquirePermission(endpoint);
+                    } catch (UpstreamUnavailableException e) {
+                        throw new CompletionException(e);
+                    }
+                    endpointStats.active.incrementAndGet();
+                    long start = System.nanoTime();
+                    return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                            .whenComplete((response, error) -> {
+                                long nanos = System.nanoTime() - start;
+                                endpointStats.active.decrementAndGet();
+                                endpointStats.record(response != null ? String.valueOf(response.statusCode())
+                                        : "IO_ERROR", nanos);
+                                circuitBreaker.onResult(endpoint, response == null || response.statusCode() >= 500,
+                                        nanos);
+                                if (response != null) {
+                                    countProtocol(response);
+                                    rateLimiter.onResponse(endpoint, response);
+                                }
+                            });
+                })
+                .thenApply(response -> {
+                    int status = response.statusCode();
+                    if (status < 200 || status >= 300) {
+                        throw new CompletionException(
+                                new UpstreamStatusException("HTTP error code: " + status, status));
+                    }
+                    try {
+                        return decode(response);
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                });
+    }
+
+    /**
+     * GET a JSON resource as a tree
+     */
+    public JsonNode getJson(String url, UpstreamEndpoint endpoint) throws IOException {
+        return mapper.readTree(getBytes(url, endpoint));
+    }
+
+    /**
+     * Snapshot of request counts and latencies per endpoint, of the rate limits and of
+     * the circuit breakers, for status pages
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (EndpointStats endpointStats : stats.values()) {
+            result.put(endpointStats.name, endpointStats.snapshot());
+        }
+
+        Map<String, Object> protocols = new LinkedHashMap<>();
+        protocols.put("HTTP/2", http2Responses.get());
+        protocols.put("HTTP/1.1", http1Responses.get());
+        result.put("protocols", protocols);
+        result.put("rateLimits", rateLimiter.getStats());
+        result.put("circuitBreakers", circuitBreaker.getStats());
+        return result;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (executor instanceof ExecutorService) {
+            ((ExecutorService) executor).shutdownNow();
+        }
+    }
+
+    /**
+     * Virtual threads when enabled and supported, otherwise a cached pool of daemon threads
+     */
+    private static Executor createExecutor(boolean virtualThreads) {
+        if (virtualThreads) {
+            try {
+                return new VirtualThreadTaskExecutor("upstream-http-");
+            } catch (UnsupportedOperationException e) {
+                logger.warn("Virtual threads need Java 21 or later, using platform threads for upstream calls");
+            }
+        }
+
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "upstream-http-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Wait for an async call, unwrapping its failure into the IOException it carries
+     */
+    public static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            throw new IOException("Upstream request interrupted", e);
+        }
+    }
+
+    /**
+     * The actual failure behind a CompletionException or ExecutionException
+     */
+    public static Throwable unwrap(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException)
+                && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    private void countProtocol(HttpResponse<?> response) {
+        if (response.version() == HttpClient.Version.HTTP_2) {
+            http2Responses.incrementAndGet();
+        } else {
+            http1Responses.incrementAndGet();
+        }
+    }
+
+    /**
+     * Decompress a body according to its Content-Encoding
+     */
+    private static byte[] decode(HttpResponse<byte[]> response) throws IOException {
+        String encoding = response.headers().firstValue("Content-Encoding").orElse("").trim();
+        byte[] body = response.body();
+
+        if (encoding.equalsIgnoreCase("gzip")) {
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                return in.readAllBytes();
+            }
+        }
+        if (encoding.equalsIgnoreCase("deflate")) {
+            try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(body))) {
+                return in.readAllBytes();
+            }
+        }
+        return body;
+    }
+
+    private static void setDefaultProperty(String key, String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
+
+    /**
+     * Counters for one endpoint, also published as Micrometer meters
+     */
+    private static class EndpointStats {
+        final String name;
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicLong requests = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+        final AtomicLong totalNanos = new AtomicLong();
+        final MeterRegistry meterRegistry;
+
+        EndpointStats(UpstreamEndpoint endpoint, MeterRegistry meterRegistry) {
+            this.name = endpoint.name().toLowerCase().replace('_', '-');
+            this.meterRegistry = meterRegistry;
+            Gauge.builder("upstream.requests.active", active, AtomicInteger::get)
+                    .tag("endpoint", name)
+                    .register(meterRegistry);
+        }
+
+        void record(String outcome, long nanos) {
+            requests.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            if (!outcome.startsWith("2")) {
+                failures.incrementAndGet();
+            }
+            Timer.builder("upstream.requests")
+                    .tag("endpoint", name)
+                    .tag("status", outcome)
+                    .register(meterRegistry)
+                    .record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        Map<String, Object> snapshot() {
+            long count = requests.get();
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("active", active.get());
+            result.put("requests", count);
+            result.put("failures", failures.get());
+            result.put("averageMs", count > 0 ? totalNanos.get() / count / 1_000_000 : 0);
+            return result;
+        }
+    }
+}
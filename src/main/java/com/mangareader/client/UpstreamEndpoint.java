@@ -0,0 +1,15 @@
+package com.mangareader.client;
+
+/**
+ * Kinds of upstream calls, each with its own timeout and metrics
+ */
+public enum UpstreamEndpoint {
+    /** MangaDex JSON API (manga, chapters, covers, statistics) */
+    API,
+    /** MangaDex /at-home/server lookups */
+    AT_HOME,
+    /** Page and cover images from @Home nodes and the uploads origin */
+    IMAGE,
+    /** @Home network load reports */
+    REPORT
+}
@@ -0,0 +1,61 @@
+package com.mangareader.client;
+
+import java.util.function.Supplier;
+
+/**
+ * How urgently an upstream call is needed, for ordering calls queued behind a rate limit.
+ *
+ * A call takes the priority of the thread that starts it. Interactive is the default;
+ * crawls, prefetching and background refreshes run under {@link #runInBackground}.
+ * Async continuations and batch flushes run on other threads, so code that starts
+ * calls from them captures {@link #current()} up front and restores it with
+ * {@link #within}.
+ */
+public enum UpstreamPriority {
+    /** Someone is waiting on the response */
+    INTERACTIVE,
+    /** Crawls, prefetching and refreshes nobody is waiting on */
+    BACKGROUND;
+
+    private static final ThreadLocal<UpstreamPriority> current = ThreadLocal.withInitial(() -> INTERACTIVE);
+
+    /**
+     * Priority of upstream calls started from the current thread
+     */
+    public static UpstreamPriority current() {
+        return current.get();
+    }
+
+    /**
+     * The more urgent of two priorities; null counts as no priority at all
+     */
+    public static UpstreamPriority highest(UpstreamPriority a, UpstreamPriority b) {
+        if (a == null || b == null) {
+            return a != null ? a : b;
+        }
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+
+    /**
+     * Run a task with the upstream calls it starts on this thread queued as background work
+     */
+    public static void runInBackground(Runnable task) {
+        BACKGROUND.within(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Run a task with the upstream calls it starts on this thread queued at this priority
+     */
+    public <T> T within(Supplier<T> task) {
+        UpstreamPriority previous = current.get();
+        current.set(this);
+        try {
+            return task.get();
+        } finally {
+            current.set(previous);
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package com.mangareader.client;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps all upstream traffic within MangaDex's rate limits.
+ *
+ * Each rate-limited {@link UpstreamEndpoint} has one token bucket shared by every call.
+ * A call that finds its bucket empty is queued by {@link UpstreamPriority}, so readers go
+ * ahead of crawls and prefetching, and is released by a scheduler thread once a token is
+ * back; nothing blocks a thread while waiting. A 429, Retry-After or an exhausted
+ * X-RateLimit-Remaining pauses the bucket until upstream's reset time instead of letting
+ * every waiting call run into the same 429.
+ */
+@Component
+public class UpstreamRateLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(UpstreamRateLimiter.class);
+
+    // Pause after a 429 that doesn't say when to come back
+    private static final long DEFAULT_RETRY_AFTER_MS = 1000;
+
+    // Never pause a bucket longer than this on one response's say-so
+    private static final long MAX_PAUSE_MS = 10 * 60 * 1000;
+
+    // Look at the queue at least this often, to time out waiters while paused
+    private static final long MAX_DRAIN_DELAY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Map<UpstreamEndpoint, Bucket> buckets = new EnumMap<>(UpstreamEndpoint.class);
+    private final ScheduledExecutorService scheduler;
+    private final int maxQueued;
+    private final long maxWaitNanos;
+
+    public UpstreamRateLimiter(MeterRegistry meterRegistry,
+            @Value("${app.upstream.rate-limit.api-per-second:5}") double apiPerSecond,
+            @Value("${app.upstream.rate-limit.api-burst:5}") int apiBurst,
+            @Value("${app.upstream.rate-limit.at-home-per-minute:30}") double atHomePerMinute,
+            @Value("${app.upstream.rate-limit.at-home-burst:10}") int atHomeBurst,
+            @Value("${app.upstream.rate-limit.max-queued:1000}") int maxQueued,
+            @Value("${app.upstream.rate-limit.max-wait-seconds:30}") long maxWaitSeconds) {
+        this.maxQueued = maxQueued;
+        this.maxWaitNanos = TimeUnit.SECONDS.toNanos(maxWaitSeconds);
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "upstream-rate-limiter");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        buckets.put(UpstreamEndpoint.API, new Bucket(UpstreamEndpoint.API, apiPerSecond, apiBurst, meterRegistry));
+        buckets.put(UpstreamEndpoint.AT_HOME,
+                new Bucket(UpstreamEndpoint.AT_HOME, atHomePerMinute / 60, atHomeBurst, meterRegistry));
+        // Images and reports go to @Home nodes and the uploads origin, not the rate-limited API
+        buckets.put(UpstreamEndpoint.IMAGE, new Bucket(UpstreamEndpoint.IMAGE, 0, 0, meterRegistry));
+        buckets.put(UpstreamEndpoint.REPORT, new Bucket(UpstreamEndpoint.REPORT, 0, 0, meterRegistry));
+    }
+
+    /**
+     * Wait for a token. Completes at once if the bucket has one and nobody is queued,
+     * otherwise when this call's turn comes. Fails with an IOException if the queue is
+     * full or the call waited longer than app.upstream.rate-limit.max-wait-seconds.
+     */
+    public CompletableFuture<Void> acquire(UpstreamEndpoint endpoint, UpstreamPriority priority) {
+        return buckets.get(endpoint).acquire(priority);
+    }
+
+    /**
+     * Read the rate limit headers of a response, pausing the endpoint's bucket if
+     * upstream says its budget is spent
+     */
+    public void onResponse(UpstreamEndpoint endpoint, HttpResponse<?> response) {
+        Bucket bucket = buckets.get(endpoint);
+        if (!bucket.isLimited()) {
+            return;
+        }
+
+        HttpHeaders headers = response.headers();
+        long pauseMs = 0;
+        if (response.statusCode() == 429) {
+            bucket.throttled.incrementAndGet();
+            pauseMs = retryAfterMs(headers);
+            if (pauseMs <= 0) {
+                pauseMs = DEFAULT_RETRY_AFTER_MS;
+            }
+        } else {
+            long remaining = headers.firstValueAsLong("X-RateLimit-Remaining").orElse(-1);
+            if (remaining == 0) {
+                pauseMs = retryAfterMs(headers);
+            } else if (remaining > 0) {
+                bucket.limitTokens(remaining);
+            }
+        }
+
+        if (pauseMs > 0) {
+            pauseMs = Math.min(pauseMs, MAX_PAUSE_MS);
+            logger.warn("MangaDex {} rate limit reached, holding requests for {} ms", bucket.name, pauseMs);
+            bucket.pause(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(pauseMs));
+        }
+    }
+
+    /**
+     * Budget and queue state per rate-limited endpoint, for status pages
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (Bucket bucket : buckets.values()) {
+            if (bucket.isLimited()) {
+                result.put(bucket.name, bucket.snapshot());
+            }
+        }
+        return result;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Milliseconds until upstream accepts requests again, from Retry-After (seconds or
+     * an HTTP date) or MangaDex's X-RateLimit-Retry-After (epoch seconds); 0 if neither
+     */
+    private static long retryAfterMs(HttpHeaders headers) {
+        long now = System.currentTimeMillis();
+        String retryAfter = headers.firstValue("Retry-After").orElse(null);
+        if (retryAfter != null) {
+            try {
+                return Long.parseLong(retryAfter.trim()) * 1000;
+            } catch (NumberFormatException e) {
+                try {
+                    return ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME)
+                            .toInstant().toEpochMilli() - now;
+                } catch (DateTimeParseException ignored) {
+                    // Fall through to the MangaDex header
+                }
+            }
+        }
+
+        long resetAt = headers.firstValueAsLong("X-RateLimit-Retry-After").orElse(0);
+        return resetAt > 0 ? resetAt * 1000 - now : 0;
+    }
+
+    /**
+     * Token bucket and wait queue for one endpoint
+     */
+    private class Bucket {
+        final String name;
+        final double tokensPerNano;
+        final double capacity;
+
+        final PriorityQueue<Waiter> queue = new PriorityQueue<>();
+        final Map<UpstreamPriority, AtomicInteger> queued = new EnumMap<>(UpstreamPriority.class);
+        double tokens;
+        long refilledAt;
+        long pausedUntil;
+        boolean paused;
+        long sequence;
+        boolean drainScheduled;
+
+        final AtomicLong immediate = new AtomicLong();
+        final AtomicLong delayed = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong();
+        final AtomicLong timedOut = new AtomicLong();
+        final AtomicLong throttled = new AtomicLong();
+        final MeterRegistry meterRegistry;
+
+        Bucket(UpstreamEndpoint endpoint, double perSecond, int burst, MeterRegistry meterRegistry) {
+            this.name = endpoint.name().toLowerCase().replace('_', '-');
+            this.tokensPerNano = Math.max(0, perSecond) / 1e9;
+            this.capacity = Math.max(1, burst);
+            this.tokens = capacity;
+            this.refilledAt = System.nanoTime();
+            this.meterRegistry = meterRegistry;
+
+            if (!isLimited()) {
+                return;
+            }
+            for (UpstreamPriority priority : UpstreamPriority.values()) {
+                AtomicInteger count = new AtomicInteger();
+                queued.put(priority, count);
+                Gauge.builder("upstream.ratelimit.queued", count, AtomicInteger::get)
+                        .tag("endpoint", name)
+                        .tag("priority", priority.name().toLowerCase())
+                        .register(meterRegistry);
+            }
+            FunctionCounter.builder("upstream.ratelimit.rejected", rejected, AtomicLong::get)
+                    .tag("endpoint", name).register(meterRegistry);
+            FunctionCounter.builder("upstream.ratelimit.throttled", throttled, AtomicLong::get)
+                    .tag("endpoint", name).register(meterRegistry);
+        }
+
+        boolean isLimited() {
+            return tokensPerNano > 0;
+        }
+
+        CompletableFuture<Void> acquire(UpstreamPriority priority) {
+            if (!isLimited()) {
+                return CompletableFuture.completedFuture(null);
+            }
+
+            long now = System.nanoTime();
+            synchronized (this) {
+                refill(now);
+                if (queue.isEmpty() && !isPaused(now) && tokens >= 1) {
+                    tokens -= 1;
+                    immediate.incrementAndGet();
+                    return CompletableFuture.completedFuture(null);
+                }
+                if (queue.size() >= maxQueued) {
+                    rejected.incrementAndGet();
+                    return CompletableFuture.failedFuture(
+                            new IOException("Too many requests queued for the MangaDex " + name + " rate limit"));
+                }
+
+                Waiter waiter = new Waiter(priority, sequence++, now);
+                queue.add(waiter);
+                queued.get(priority).incrementAndGet();
+                scheduleDrain(now);
+                return waiter.future;
+            }
+        }
+
+        /**
+         * Hand out tokens to queued calls in priority order, completing them outside the lock
+         */
+        void drain() {
+            List<Waiter> ready = new ArrayList<>();
+            List<Waiter> expired = new ArrayList<>();
+            long now = System.nanoTime();
+
+            synchronized (this) {
+                drainScheduled = false;
+                refill(now);
+                while (!queue.isEmpty()) {
+                    Waiter head = queue.peek();
+                    if (head.future.isDone()) {
+                        // Given up on by its caller
+                        remove(head);
+                    } else if (now - head.queuedAt > maxWaitNanos) {
+                        remove(head);
+                        expired.add(head);
+                    } else if (!isPaused(now) && tokens >= 1) {
+                        remove(head);
+                        tokens -= 1;
+                        ready.add(head);
+                    } else {
+                        break;
+                    }
+                }
+                if (!queue.isEmpty()) {
+                    scheduleDrain(now);
+                }
+            }
+
+            for (Waiter waiter : expired) {
+                timedOut.incrementAndGet();
+                waiter.future.completeExceptionally(
+                        new IOException("Timed out waiting for the MangaDex " + name + " rate limit"));
+            }
+            for (Waiter waiter : ready) {
+                delayed.incrementAndGet();
+                Timer.builder("upstream.ratelimit.wait")
+                        .tag("endpoint", name)
+                        .tag("priority", waiter.priority.name().toLowerCase())
+                        .register(meterRegistry)
+                        .record(now - waiter.queuedAt, TimeUnit.NANOSECONDS);
+                waiter.future.complete(null);
+            }
+        }
+
+        private void remove(Waiter waiter) {
+            queue.poll();
+            queued.get(waiter.priority).decrementAndGet();
+        }
+
+        private void scheduleDrain(long now) {
+            if (drainScheduled) {
+                return;
+            }
+            long delay = isPaused(now)
+                    ? pausedUntil - now
+                    : (long) Math.ceil((1 - tokens) / tokensPerNano);
+            drainScheduled = true;
+            scheduler.schedule(this::drain, Math.min(Math.max(0, delay), MAX_DRAIN_DELAY_NANOS),
+                    TimeUnit.NANOSECONDS);
+        }
+
+        private void refill(long now) {
+            // Nothing accrues while upstream has told us to wait
+            if (!isPaused(now)) {
+                tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerNano);
+            }
+            refilledAt = now;
+        }
+
+        private boolean isPaused(long now) {
+            if (paused && now - pausedUntil >= 0) {
+                paused = false;
+            }
+            return paused;
+        }
+
+        synchronized void pause(long until) {
+            long now = System.nanoTime();
+            refill(now);
+            if (!isPaused(now) || until - pausedUntil > 0) {
+                pausedUntil = until;
+                paused = true;
+            }
+            tokens = 0;
+        }
+
+        /**
+         * Upstream knows best how many calls are left in its window
+         */
+        synchronized void limitTokens(long remaining) {
+            refill(System.nanoTime());
+            tokens = Math.min(tokens, remaining);
+        }
+
+        synchronized Map<String, Object> snapshot() {
+            long now = System.nanoTime();
+            refill(now);
+            Map<String, Object> waiting = new LinkedHashMap<>();
+            queued.forEach((priority, count) -> waiting.put(priority.name().toLowerCase(), count.get()));
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("tokens", (int) tokens);
+            result.put("queued", waiting);
+            result.put("immediate", immediate.get());
+            result.put("delayed", delayed.get());
+            result.put("rejected", rejected.get());
+            result.put("timedOut", timedOut.get());
+            result.put("throttled", throttled.get());
+            result.put("pausedMs", isPaused(now) ? TimeUnit.NANOSECONDS.toMillis(pausedUntil - now) : 0);
+            return result;
+        }
+    }
+
+    /**
+     * A queued call; interactive first, then first come first served
+     */
+    private static class Waiter implements Comparable<Waiter> {
+        final UpstreamPriority priority;
+        final long sequence;
+        final long queuedAt;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Waiter(UpstreamPriority priority, long sequence, long queuedAt) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.queuedAt = queuedAt;
+        }
+
+        @Override
+        public int compareTo(Waiter other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -1,5 +1,11 @@
 package com.mangareader.controller;
 
+import com.mangareader.client.UpstreamClient;
+import com.mangareader.service.CatalogueIndex;
+import com.mangareader.service.MangaLookupBatcher;
+import com.mangareader.service.PopularityIndex;
+import com.mangareader.service.ResponseCache;
+import com.mangareader.service.StatisticsCache;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -28,6 +34,24 @@ public class HealthCheckController {
 
     private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
+    private final UpstreamClient upstreamClient;
+    private final ResponseCache responseCache;
+    private final PopularityIndex popularityIndex;
+    private final StatisticsCache statisticsCache;
+    private final CatalogueIndex catalogueIndex;
+    private final MangaLookupBatcher mangaLookupBatcher;
+
+    public HealthCheckController(UpstreamClient upstreamClient, ResponseCache responseCache,
+            PopularityIndex popularityIndex, StatisticsCache statisticsCache, CatalogueIndex catalogueIndex,
+            MangaLookupBatcher mangaLookupBatcher) {
+        this.upstreamClient = upstreamClient;
+        this.responseCache = responseCache;
+        this.popularityIndex = popularityIndex;
+        this.statisticsCache = statisticsCache;
+        this.catalogueIndex = catalogueIndex;
+        this.mangaLookupBatcher = mangaLookupBatcher;
+    }
+
     /**
      * Health check endpoint
      * GET /healthcheck
@@ -93,6 +117,32 @@ public class HealthCheckController {
         system.put("osName", System.getProperty("os.name"));
         response.put("system", system);
 
+        // Upstream (MangaDex) client: requests, failures and latency per endpoint
+        response.put("upstream", upstreamClient.getStats());
+
+        // Response cache: entries and hit rates per endpoint
+        response.put("cache", responseCache.getStats());
+
+        // Per-manga statistics cache: entries, hit rate and upstream batches
+        response.put("statistics", statisticsCache.getStats());
+
+        // By-ID manga lookups and the bulk requests they were batched into
+        response.put("mangaLookups", mangaLookupBatcher.getStats());
+
+        // Followers ranking: size and when it was last rebuilt
+        Map<String, Object> popular = new HashMap<>();
+        popular.put("ready", popularityIndex.isReady());
+        popular.put("size", popularityIndex.size());
+        popular.put("builtAt", popularityIndex.isReady() ? popularityIndex.getBuiltAt() : null);
+        response.put("popular", popular);
+
+        // Local search index built by the same crawl
+        Map<String, Object> catalogue = new HashMap<>();
+        catalogue.put("ready", catalogueIndex.isReady());
+        catalogue.put("manga", catalogueIndex.size());
+        catalogue.put("terms", catalogueIndex.termCount());
+        response.put("catalogue", catalogue);
+
         System.out.println("[HEALTH CHECK - DETAILED] Status checked at: " + timestamp);
 
         return ResponseEntity.ok(response);
@@ -1,250 +1,286 @@
 package com.mangareader.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mangareader.client.UpstreamClient;
 import com.mangareader.dto.PopularMangaResponseDTO;
+import com.mangareader.exception.UpstreamStatusException;
+import com.mangareader.exception.UpstreamUnavailableException;
+import com.mangareader.service.AtHomeService;
 import com.mangareader.service.MangaDexService;
-import com.mangareader.util.HttpClient;
-import com.mangareader.util.MangaDexParser;
+import com.mangareader.service.ResponseCache;
+import com.mangareader.service.TitleSuggester;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Manga endpoints. Everything that goes to MangaDex is handled asynchronously: the
+ * handlers return a CompletableFuture (the chapter list then streams through a
+ * ResponseBodyEmitter) and no servlet thread waits for upstream responses.
+ *
+ * When MangaDex fails, cached endpoints answer with the last good response, flagged
+ * with a Warning: 111 and an Age header. Without one, an open circuit breaker is
+ * answered with 503 and Retry-After.
+ */
 @RestController
 @RequestMapping("/api/manga")
 @CrossOrigin(origins = "*")
 public class MangaController {
 
-    private final HttpClient httpClient;
-    private final MangaDexParser parser;
+    // RFC 7234 warning for a response served because revalidation failed
+    private static final String STALE_WARNING = "111 - \"Revalidation Failed\"";
+
     private final ObjectMapper mapper;
     private final MangaDexService mangaDexService;
+    private final AtHomeService atHomeService;
 
     @Value("${app.proxy.base-url}")
     private String proxyBaseUrl;
 
-    public MangaController(HttpClient httpClient, MangaDexParser parser, ObjectMapper mapper, 
-                          MangaDexService mangaDexService) {
-        this.httpClient = httpClient;
-        this.parser = parser;
+    // A streamed chapter list is abandoned if not finished within this long
+    @Value("${app.chapters.stream-timeout-seconds:120}")
+    private long streamTimeoutSeconds;
+
+    // Most manga IDs accepted by one POST /api/manga/batch
+    @Value("${app.manga-batch.max-ids:300}")
+    private int maxBatchIds;
+
+    public MangaController(ObjectMapper mapper, MangaDexService mangaDexService, AtHomeService atHomeService) {
         this.mapper = mapper;
         this.mangaDexService = mangaDexService;
+        this.atHomeService = atHomeService;
     }
 
     /**
      * Get popular manga with pagination
-     * GET /api/manga/popular?limit={limit}&offset={offset}&order={order}&sortBy={sortBy}
+     * GET /api/manga/popular?limit={limit}&offset={offset}&order={order}&sortBy={sortBy}&cursor={cursor}
      * 
      * @param limit Number of results per page (default: 20)
      * @param offset Pagination offset (default: 0)
      * @param order Sort order: "asc" or "desc" (default: "desc")
      * @param sortBy Sort field (default: "followedCount")
+     * @param cursor nextCursor of the previous page; takes precedence over offset
      * @return PopularMangaResponseDTO with total, limit, offset, and results
      */
     @GetMapping("/popular")
-    public ResponseEntity<?> getPopularManga(
+    public CompletableFuture<ResponseEntity<?>> getPopularManga(
             @RequestParam(required = false, defaultValue = "20") Integer limit,
             @RequestParam(required = false, defaultValue = "0") Integer offset,
             @RequestParam(required = false, defaultValue = "desc") String order,
-            @RequestParam(required = false, defaultValue = "followedCount") String sortBy) {
-        try {
-            // Validate parameters
-            if (limit < 1 || limit > 100) {
-                return ResponseEntity.badRequest()
-                        .body(createError(400, "Limit must be between 1 and 100"));
-            }
-            
-            if (offset < 0) {
-                return ResponseEntity.badRequest()
-                        .body(createError(400, "Offset must be 0 or greater"));
-            }
-            
-            if (!"asc".equals(order) && !"desc".equals(order)) {
-                return ResponseEntity.badRequest()
-                        .body(createError(400, "Order must be 'asc' or 'desc'"));
-            }
+            @RequestParam(required = false, defaultValue = "followedCount") String sortBy,
+            @RequestParam(required = false) String cursor) {
+        // Validate parameters
+        if (limit < 1 || limit > 100) {
+            return completed(ResponseEntity.badRequest()
+                    .body(createError(400, "Limit must be between 1 and 100")));
+        }
 
-            // Fetch popular manga from service
-            PopularMangaResponseDTO response = mangaDexService.getPopularManga(limit, offset, order, sortBy);
-            
-            return ResponseEntity.ok(response);
+        if (offset < 0) {
+            return completed(ResponseEntity.badRequest()
+                    .body(createError(400, "Offset must be 0 or greater")));
+        }
 
-        } catch (Exception e) {
-            return ResponseEntity.internalServerError()
-                    .body(createError(500, "Error fetching popular manga: " + e.getMessage()));
+        if (!"asc".equals(order) && !"desc".equals(order)) {
+            return completed(ResponseEntity.badRequest()
+                    .body(createError(400, "Order must be 'asc' or 'desc'")));
         }
+
+        // Fetch popular manga from service
+        return mangaDexService.getPopularManga(limit, offset, order, sortBy, cursor)
+                .<ResponseEntity<?>>thenApply(result -> ok(result, result.getValue()))
+                .exceptionally(error -> {
+                    Throwable cause = UpstreamClient.unwrap(error);
+                    if (cause instanceof IllegalArgumentException) {
+                        return ResponseEntity.badRequest()
+                                .body(createError(400, "Invalid cursor"));
+                    }
+                    return upstreamError("Error fetching popular manga: ", cause);
+                });
     }
 
     /**
      * Search manga by title
-     * GET /api/manga/search?q=<title>
+     * GET /api/manga/search?q=<title>&mode={remote|local}
+     *
+     * mode=local answers from the crawled catalogue index (prefix and typo tolerant)
+     * instead of MangaDex
      */
     @GetMapping("/search")
-    public ResponseEntity<?> searchManga(@RequestParam(required = false) String q) {
+    public CompletableFuture<ResponseEntity<?>> searchManga(@RequestParam(required = false) String q,
+            @RequestParam(required = false, defaultValue = "remote") String mode) {
+        if (q == null || q.trim().isEmpty()) {
+            return completed(ResponseEntity.badRequest()
+                    .body(createError(400, "Missing query parameter 'q'")));
+        }
+
+        if (!"remote".equals(mode) && !"local".equals(mode)) {
+            return completed(ResponseEntity.badRequest()
+                    .body(createError(400, "Mode must be 'remote' or 'local'")));
+        }
+
+        // Search MangaDex (cached, covers resolved from the same response) or the local index
+        CompletableFuture<ResponseCache.Cached<ArrayNode>> search = "local".equals(mode)
+                ? mangaDexService.searchMangaLocally(q)
+                : mangaDexService.searchManga(q);
+
+        return search.<ResponseEntity<?>>thenApply(results -> {
+            // Build final response
+            Map<String, Object> finalResponse = new HashMap<>();
+            finalResponse.put("results", results.getValue());
+            return ok(results, finalResponse);
+        }).exceptionally(error -> upstreamError("Error searching manga: ", UpstreamClient.unwrap(error)));
+    }
+
+    /**
+     * Title suggestions as the user types
+     * GET /api/manga/suggest?q=<partial title>&limit={limit}
+     *
+     * Answered from the crawled catalogue, most followed first
+     */
+    @GetMapping("/suggest")
+    public ResponseEntity<?> suggestTitles(@RequestParam(required = false) String q,
+            @RequestParam(required = false, defaultValue = "10") Integer limit) {
         try {
             if (q == null || q.trim().isEmpty()) {
                 return ResponseEntity.badRequest()
                         .body(createError(400, "Missing query parameter 'q'"));
             }
 
-            // Encode query for URL
-            String encodedQuery = URLEncoder.encode(q, StandardCharsets.UTF_8);
-
-            // Call MangaDex API
-            String apiUrl = "https://api.mangadex.org/manga?title=" + encodedQuery;
-            String response = httpClient.get(apiUrl);
-
-            // Parse and simplify response
-            ArrayNode results = parser.parseMangaSearchResults(response);
-
-            // For each manga, try to get cover URL
-            for (int i = 0; i < results.size(); i++) {
-                ObjectNode manga = (ObjectNode) results.get(i);
-                String coverId = manga.has("coverId") ? manga.get("coverId").asText() : null;
-
-                if (coverId != null && !coverId.isEmpty()) {
-                    try {
-                        String coverUrl = "https://api.mangadex.org/cover/" + coverId;
-                        String coverResponse = httpClient.get(coverUrl);
-
-                        // Extract cover filename
-                        JsonNode coverRoot = mapper.readTree(coverResponse);
-                        JsonNode coverData = coverRoot.get("data");
-
-                        if (coverData != null) {
-                            JsonNode attributes = coverData.get("attributes");
-                            if (attributes != null && attributes.has("fileName")) {
-                                String fileName = attributes.get("fileName").asText();
-                                String mangaId = manga.get("id").asText();
-                                // Use proxy URL for cover
-                                String proxyCoverUrl = String.format(
-                                        "%s/proxy/mangadex/cover/%s/%s",
-                                        proxyBaseUrl, mangaId, fileName);
-                                manga.put("cover", proxyCoverUrl);
-                            }
-                        }
-                    } catch (Exception e) {
-                        // If cover fetch fails, just leave it empty
-                        manga.put("cover", "");
-                    }
-
-                    // Remove coverId from final response
-                    manga.remove("coverId");
-                }
+            if (limit < 1 || limit > TitleSuggester.MAX_SUGGESTIONS) {
+                return ResponseEntity.badRequest()
+                        .body(createError(400, "Limit must be between 1 and " + TitleSuggester.MAX_SUGGESTIONS));
             }
 
-            // Build final response
-            Map<String, Object> finalResponse = new HashMap<>();
-            finalResponse.put("results", results);
+            Map<String, Object> response = new HashMap<>();
+            response.put("suggestions", mangaDexService.suggestTitles(q, limit));
 
-            return ResponseEntity.ok(finalResponse);
+            return ResponseEntity.ok(response);
 
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(createError(503, e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.internalServerError()
-                    .body(createError(500, "Error searching manga: " + e.getMessage()));
+                    .body(createError(500, "Error suggesting titles: " + e.getMessage()));
         }
     }
 
     /**
-     * Get manga details by ID
-     * GET /api/manga/{id}
+     * Get many manga at once, e.g. for a library screen
+     * POST /api/manga/batch  {"ids": ["<id>", ...]}
+     *
+     * Returns {"results": [...], "notFound": [...], "failed": [...]} with results in
+     * request order, each with cover and followers
      */
-    @GetMapping("/{id}")
-    public ResponseEntity<?> getMangaDetails(@PathVariable String id) {
-        try {
-            if (id == null || id.trim().isEmpty()) {
-                return ResponseEntity.badRequest()
-                        .body(createError(400, "Missing manga ID"));
+    @PostMapping("/batch")
+    public CompletableFuture<ResponseEntity<?>> getMangaBatch(@RequestBody(required = false) JsonNode body) {
+        JsonNode ids = body != null ? body.get("ids") : null;
+        if (ids == null || !ids.isArray() || ids.isEmpty()) {
+            return completed(ResponseEntity.badRequest()
+                    .body(createError(400, "Body must be {\"ids\": [...]} with at least one manga ID")));
+        }
+
+        if (ids.size() > maxBatchIds) {
+            return completed(ResponseEntity.badRequest()
+                    .body(createError(400, "At most " + maxBatchIds + " manga IDs per request")));
+        }
+
+        List<String> idList = new ArrayList<>();
+        for (JsonNode id : ids) {
+            if (!id.isTextual() || id.asText().trim().isEmpty()) {
+                return completed(ResponseEntity.badRequest()
+                        .body(createError(400, "Manga IDs must be non-empty strings")));
             }
+            idList.add(id.asText());
+        }
 
-            // Fetch manga details
-            String mangaUrl = "https://api.mangadex.org/manga/" + id;
-            String mangaResponse = httpClient.get(mangaUrl);
+        return mangaDexService.getMangaBatch(idList)
+                .<ResponseEntity<?>>thenApply(result -> ok(result, result.getValue()))
+                .exceptionally(error -> upstreamError("Error fetching manga: ", UpstreamClient.unwrap(error)));
+    }
 
-            // Parse to get cover ID
-            JsonNode mangaRoot = mapper.readTree(mangaResponse);
-            JsonNode mangaData = mangaRoot.get("data");
+    /**
+     * Get manga details by ID
+     * GET /api/manga/{id}
+     */
+    @GetMapping("/{id}")
+    public CompletableFuture<ResponseEntity<?>> getMangaDetails(@PathVariable String id) {
+        if (id == null || id.trim().isEmpty()) {
+            return completed(ResponseEntity.badRequest()
+                    .body(createError(400, "Missing manga ID")));
+        }
 
-            if (mangaData == null) {
+        // Fetch manga details (cover expanded, statistics and latest chapter in parallel)
+        return mangaDexService.getMangaDetails(id).<ResponseEntity<?>>thenApply(result -> {
+            if (result.getValue() == null) {
                 return ResponseEntity.status(404)
                         .body(createError(404, "Manga not found"));
             }
-
-            // Get cover ID from relationships
-            String coverId = null;
-            JsonNode relationships = mangaData.get("relationships");
-            if (relationships != null && relationships.isArray()) {
-                for (JsonNode rel : relationships) {
-                    if ("cover_art".equals(rel.get("type").asText())) {
-                        coverId = rel.get("id").asText();
-                        break;
-                    }
-                }
-            }
-
-            // Fetch cover details if available
-            String coverResponse = null;
-            if (coverId != null && !coverId.isEmpty()) {
-                try {
-                    String coverUrl = "https://api.mangadex.org/cover/" + coverId;
-                    coverResponse = httpClient.get(coverUrl);
-                } catch (Exception e) {
-                    // Cover fetch failed, continue without it
-                }
+            return ok(result, result.getValue());
+        }).exceptionally(error -> {
+            Throwable cause = UpstreamClient.unwrap(error);
+            if (cause instanceof UpstreamStatusException && ((UpstreamStatusException) cause).getStatusCode() == 404) {
+                return ResponseEntity.status(404)
+                        .body(createError(404, "Manga not found"));
             }
-
-            // Parse and merge (with proxy URL for cover)
-            ObjectNode result = parser.parseMangaDetail(mangaResponse, coverResponse, proxyBaseUrl);
-
-            // Remove coverId from final response
-            result.remove("coverId");
-
-            return ResponseEntity.ok(result);
-
-        } catch (Exception e) {
-            return ResponseEntity.internalServerError()
-                    .body(createError(500, "Error fetching manga: " + e.getMessage()));
-        }
+            return upstreamError("Error fetching manga: ", cause);
+        });
     }
 
     /**
      * List chapters for a manga
      * GET /api/manga/{id}/chapters
+     *
+     * Every chapter is listed, however long the series. The feed is fetched page by
+     * page (in parallel after the first) and written to the client as each page
+     * arrives, so the first chapters go out before the last page is fetched.
      */
     @GetMapping("/{id}/chapters")
-    public ResponseEntity<?> getMangaChapters(@PathVariable String id) {
-        try {
-            if (id == null || id.trim().isEmpty()) {
-                return ResponseEntity.badRequest()
-                        .body(createError(400, "Missing manga ID"));
-            }
-
-            // Fetch chapters feed
-            String chaptersUrl = String.format(
-                    "https://api.mangadex.org/manga/%s/feed?translatedLanguage[]=en&order[chapter]=asc&limit=500",
-                    id);
-            String chaptersResponse = httpClient.get(chaptersUrl);
-
-            // Parse chapters
-            ArrayNode chapters = parser.parseChapters(chaptersResponse);
-
-            // Build response
-            Map<String, Object> result = new HashMap<>();
-            result.put("chapters", chapters);
-
-            return ResponseEntity.ok(result);
+    public CompletableFuture<ResponseEntity<ResponseBodyEmitter>> getMangaChapters(@PathVariable String id) {
+        if (id == null || id.trim().isEmpty()) {
+            return CompletableFuture.completedFuture(whole(ResponseEntity.badRequest()
+                    .body(createError(400, "Missing manga ID"))));
+        }
 
-        } catch (Exception e) {
-            return ResponseEntity.internalServerError()
-                    .body(createError(500, "Error fetching chapters: " + e.getMessage()));
+        // Serve a cached list whole
+        ObjectNode cached = mangaDexService.getCachedChapters(id);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(whole(ResponseEntity.ok(cached)));
         }
+
+        // Fetch and stream chapters feed as pages arrive, then cache the complete list.
+        // The response starts with the first page, so until then a failure is a normal error
+        ChapterStreamWriter writer = new ChapterStreamWriter(id);
+        mangaDexService.getChapterFeed(id, writer).whenComplete((total, error) -> {
+            if (error == null) {
+                mangaDexService.cacheChapters(id, writer.getChapters(), total);
+                writer.finish(total, null);
+            } else if (!writer.isStarted()) {
+                // Nothing sent yet: an older list beats an error
+                ResponseCache.Cached<ObjectNode> fallback = mangaDexService.getFallbackChapters(id);
+                writer.getResponse().complete(whole(fallback != null ? ok(fallback, fallback.getValue())
+                        : upstreamError("Error fetching chapters: ", UpstreamClient.unwrap(error))));
+            } else {
+                writer.fail(UpstreamClient.unwrap(error));
+            }
+        });
+        return writer.getResponse();
     }
 
     /**
@@ -254,25 +290,24 @@ public class MangaController {
      * GET /api/manga/chapter/{chapterId}/pages?useProxy=false (direct URLs)
      */
     @GetMapping("/chapter/{chapterId}/pages")
-    public ResponseEntity<?> getChapterPages(
+    public CompletableFuture<ResponseEntity<?>> getChapterPages(
             @PathVariable String chapterId,
             @RequestParam(required = false, defaultValue = "true") boolean useProxy) {
-        try {
-            if (chapterId == null || chapterId.trim().isEmpty()) {
-                return ResponseEntity.badRequest()
-                        .body(createError(400, "Missing chapter ID"));
-            }
-
-            // Fetch chapter pages from at-home server
-            String atHomeUrl = "https://api.mangadex.org/at-home/server/" + chapterId;
-            String atHomeResponse = httpClient.get(atHomeUrl);
+        if (chapterId == null || chapterId.trim().isEmpty()) {
+            return completed(ResponseEntity.badRequest()
+                    .body(createError(400, "Missing chapter ID")));
+        }
 
-            // Parse page URLs (proxy or direct)
-            ArrayNode pages;
-            if (useProxy) {
-                pages = parser.parseChapterPagesWithProxy(atHomeResponse, chapterId, proxyBaseUrl);
-            } else {
-                pages = parser.parseChapterPages(atHomeResponse);
+        // Page list from the chapter's At-Home assignment, shared with the image proxy
+        return atHomeService.getAsync(chapterId).<ResponseEntity<?>>thenApply(atHome -> {
+            // Page URLs (proxy or direct)
+            ArrayNode pages = mapper.createArrayNode();
+            for (String filename : atHome.getFiles(false)) {
+                if (useProxy) {
+                    pages.add(proxyBaseUrl + "/proxy/mangadex/" + chapterId + "/" + filename);
+                } else {
+                    pages.add(atHome.getBaseUrl() + "/data/" + atHome.getHash() + "/" + filename);
+                }
             }
 
             // Build response
@@ -281,11 +316,55 @@ public class MangaController {
             result.put("useProxy", useProxy);
 
             return ResponseEntity.ok(result);
+        }).exceptionally(error -> upstreamError("Error fetching chapter pages: ", UpstreamClient.unwrap(error)));
+    }
 
-        } catch (Exception e) {
-            return ResponseEntity.internalServerError()
-                    .body(createError(500, "Error fetching chapter pages: " + e.getMessage()));
+    private static CompletableFuture<ResponseEntity<?>> completed(ResponseEntity<?> response) {
+        return CompletableFuture.completedFuture(response);
+    }
+
+    /**
+     * The same response with its body sent as JSON in one piece through an emitter
+     */
+    private static ResponseEntity<ResponseBodyEmitter> whole(ResponseEntity<?> response) {
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter();
+        try {
+            emitter.send(response.getBody(), MediaType.APPLICATION_JSON);
+            emitter.complete();
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+        return ResponseEntity.status(response.getStatusCode())
+                .headers(response.getHeaders())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(emitter);
+    }
+
+    /**
+     * 200 with the given body; a stale fallback is flagged with Warning and Age headers
+     */
+    private static ResponseEntity<?> ok(ResponseCache.Cached<?> cached, Object body) {
+        if (!cached.isStale()) {
+            return ResponseEntity.ok(body);
+        }
+        return ResponseEntity.ok()
+                .header("Warning", STALE_WARNING)
+                .header(HttpHeaders.AGE, String.valueOf(cached.getAgeSeconds()))
+                .body(body);
+    }
+
+    /**
+     * 503 with Retry-After while MangaDex's circuit breaker is open, 500 for anything else
+     */
+    private ResponseEntity<?> upstreamError(String message, Throwable cause) {
+        if (cause instanceof UpstreamUnavailableException) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER,
+                            String.valueOf(((UpstreamUnavailableException) cause).getRetryAfterSeconds()))
+                    .body(createError(503, message + cause.getMessage()));
         }
+        return ResponseEntity.internalServerError()
+                .body(createError(500, message + cause.getMessage()));
     }
 
     private Map<String, Object> createError(int status, String message) {
@@ -294,4 +373,132 @@ public class MangaController {
         error.put("status", status);
         return error;
     }
+
+    /**
+     * Writes {"chapters": [...], "total": n, "complete": true} to a response body emitter
+     * one feed page at a time. The response is only handed to Spring with the first page,
+     * so an early failure can still be answered with a normal error response. Pages are
+     * written from the upstream client's threads and a timeout from a container thread,
+     * so writes are synchronized.
+     */
+    private class ChapterStreamWriter implements MangaDexService.ChapterPageConsumer {
+        private final String id;
+        private final CompletableFuture<ResponseEntity<ResponseBodyEmitter>> response = new CompletableFuture<>();
+        private final ArrayNode chapters = mapper.createArrayNode();
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private ResponseBodyEmitter emitter;
+        private JsonGenerator json;
+        private boolean closed;
+
+        ChapterStreamWriter(String id) {
+            this.id = id;
+        }
+
+        /**
+         * Completes with the streaming response once the first page is written, or with
+         * whatever the caller answers instead
+         */
+        CompletableFuture<ResponseEntity<ResponseBodyEmitter>> getResponse() {
+            return response;
+        }
+
+        /**
+         * Every chapter written so far
+         */
+        ArrayNode getChapters() {
+            return chapters;
+        }
+
+        synchronized boolean isStarted() {
+            return emitter != null;
+        }
+
+        @Override
+        public synchronized void accept(ArrayNode page) throws IOException {
+            if (closed) {
+                // Timed out: fail the feed so it stops fetching
+                throw new IOException("Chapter stream closed");
+            }
+            if (json == null) {
+                json = mapper.getFactory().createGenerator(buffer);
+                json.writeStartObject();
+                json.writeArrayFieldStart("chapters");
+            }
+
+            for (JsonNode chapter : page) {
+                json.writeTree(chapter);
+            }
+            chapters.addAll(page);
+
+            if (emitter == null) {
+                // The emitter holds what is sent before Spring takes the response over
+                emitter = new ResponseBodyEmitter(streamTimeoutSeconds * 1000);
+                emitter.onTimeout(this::timedOut);
+                send();
+                response.complete(ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(emitter));
+            } else {
+                send();
+            }
+        }
+
+        /**
+         * Close the JSON and flag the list as incomplete; part of it is already out
+         */
+        synchronized void fail(Throwable error) {
+            if (closed) {
+                return;
+            }
+            System.err.println("Chapter feed for manga " + id + " failed mid-stream: " + error.getMessage());
+            finish(-1, "Error fetching chapters: " + error.getMessage());
+        }
+
+        /**
+         * Spring no longer accepts sends once the stream has timed out, so the list is
+         * cut off as is. Completing the emitter keeps Spring from appending an error
+         * response to it, and the next page fails the feed so it stops fetching.
+         */
+        private synchronized void timedOut() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            System.err.println("Chapter stream for manga " + id + " timed out after " + streamTimeoutSeconds + " s");
+            emitter.complete();
+        }
+
+        synchronized void finish(int total, String error) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                json.writeEndArray();
+                if (total >= 0) {
+                    json.writeNumberField("total", total);
+                }
+                json.writeBooleanField("complete", error == null);
+                if (error != null) {
+                    json.writeStringField("error", error);
+                }
+                json.writeEndObject();
+                send();
+                emitter.complete();
+            } catch (IOException e) {
+                // Client is gone or the stream timed out; end it without an error response
+                emitter.complete();
+            }
+        }
+
+        private void send() throws IOException {
+            json.flush();
+            byte[] bytes = buffer.toByteArray();
+            buffer.reset();
+            try {
+                emitter.send(bytes);
+            } catch (IllegalStateException e) {
+                // Already completed, e.g. timed out: fail the feed so it stops fetching
+                throw new IOException("Chapter stream closed", e);
+            }
+        }
+    }
 }
@@ -1,13 +1,27 @@
 package com.mangareader.controller;
 
+import com.mangareader.exception.UpstreamStreamException;
+import com.mangareader.service.ImageDiskCache;
 import com.mangareader.service.ImageProxyService;
+import com.mangareader.service.UpstreamImage;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -15,6 +29,10 @@ import java.util.Map;
 @CrossOrigin(origins = "*")
 public class ProxyController {
 
+    private static final String COVER_CACHE_CONTROL = "public, max-age=604800"; // Cache for 7 days (covers don't change)
+    // Page URLs are content-addressed by filename, so the bytes behind them never change
+    private static final String PAGE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+
     private final ImageProxyService imageProxyService;
 
     public ProxyController(ImageProxyService imageProxyService) {
@@ -28,7 +46,9 @@ public class ProxyController {
     @GetMapping("/cover/{mangaId}/{filename}")
     public ResponseEntity<?> proxyCover(
             @PathVariable String mangaId,
-            @PathVariable String filename) {
+            @PathVariable String filename,
+            HttpServletRequest request,
+            HttpServletResponse response) throws UpstreamStreamException {
 
         try {
             // Validate inputs
@@ -48,30 +68,51 @@ public class ProxyController {
                         .body(createError(400, "Invalid filename format"));
             }
 
-            // Build cover URL
-            String coverUrl = String.format("https://uploads.mangadex.org/covers/%s/%s", mangaId, filename);
-
-            // Fetch cover image
-            byte[] imageBytes = imageProxyService.fetchCoverImage(coverUrl);
-
             // Determine content type
             MediaType contentType = getMediaTypeFromFilename(filename);
 
-            // Build response headers
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(contentType);
-            headers.setCacheControl("public, max-age=604800"); // Cache for 7 days (covers don't change)
-            headers.setContentLength(imageBytes.length);
+            // Answer revalidations without touching the image
+            String etag = imageProxyService.getCoverETag(mangaId, filename);
+            if (isNotModified(etag, COVER_CACHE_CONTROL, request, response)) {
+                return null;
+            }
+
+            List<HttpRange> ranges = getRequestedRanges(etag, request);
+
+            // Serve straight from disk on a cache hit
+            try (ImageDiskCache.CachedImage cached = imageProxyService.getCachedCover(mangaId, filename)) {
+                if (cached != null) {
+                    writeCachedImage(cached, contentType, etag, COVER_CACHE_CONTROL, ranges, response);
+                    return null;
+                }
+            }
+
+            // Stream cover image from upstream, forwarding any range request
+            String range = ranges != null ? request.getHeader(HttpHeaders.RANGE) : null;
+            try (UpstreamImage image = imageProxyService.openCoverImage(mangaId, filename, range)) {
+                writeUpstreamImage(image, contentType, etag, COVER_CACHE_CONTROL, response);
+            }
+            return null;
 
-            return new ResponseEntity<>(imageBytes, headers, HttpStatus.OK);
+        } catch (UpstreamStreamException e) {
+            System.err.println("Cover stream error for manga " + mangaId + ", file " + filename + ": " + e.getMessage());
+            return handleStreamFailure(e, response);
 
         } catch (Exception e) {
             System.err.println("Cover proxy error for manga " + mangaId + ", file " + filename + ": " + e.getMessage());
 
+            if (response.isCommitted()) {
+                // Client went away mid-transfer, nothing left to send
+                return null;
+            }
+
+            // Some I/O exceptions (e.g. ConnectException) carry no message
+            String error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+
             HttpStatus status = HttpStatus.INTERNAL_SERVER_ERROR;
-            String message = "Failed to fetch cover: " + e.getMessage();
+            String message = "Failed to fetch cover: " + error;
 
-            if (e.getMessage().contains("not found") || e.getMessage().contains("404")) {
+            if (error.contains("not found") || error.contains("404")) {
                 status = HttpStatus.NOT_FOUND;
                 message = "Cover not found";
             }
@@ -90,7 +131,9 @@ public class ProxyController {
     public ResponseEntity<?> proxyImage(
             @PathVariable String chapterId,
             @PathVariable String filename,
-            @RequestParam(required = false, defaultValue = "false") boolean dataSaver) {
+            @RequestParam(required = false, defaultValue = "false") boolean dataSaver,
+            HttpServletRequest request,
+            HttpServletResponse response) throws UpstreamStreamException {
 
         try {
             // Validate inputs
@@ -108,35 +151,64 @@ public class ProxyController {
             if (!filename.matches("^[a-zA-Z0-9\\-_]+\\.(jpg|jpeg|png|gif|webp)$")) {
                 return ResponseEntity.badRequest()
                         .body(createError(400, "Invalid filename format"));
-            } // Fetch image bytes
-            byte[] imageBytes = imageProxyService.fetchImage(chapterId, filename, dataSaver);
+            }
 
             // Determine content type from filename extension
             MediaType contentType = getMediaTypeFromFilename(filename);
 
-            // Build response headers
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(contentType);
-            headers.setCacheControl("public, max-age=86400"); // Cache in browser for 1 day
-            headers.setContentLength(imageBytes.length);
+            // Answer revalidations without touching the image
+            String etag = imageProxyService.getImageETag(chapterId, filename, dataSaver);
+            if (isNotModified(etag, PAGE_CACHE_CONTROL, request, response)) {
+                return null;
+            }
+
+            List<HttpRange> ranges = getRequestedRanges(etag, request);
+
+            // Start warming the following pages while this one is served
+            imageProxyService.prefetchFollowingPages(chapterId, filename, dataSaver);
+
+            // Serve straight from disk on a cache hit
+            try (ImageDiskCache.CachedImage cached = imageProxyService.getCachedImage(chapterId, filename, dataSaver)) {
+                if (cached != null) {
+                    writeCachedImage(cached, contentType, etag, PAGE_CACHE_CONTROL, ranges, response);
+                    return null;
+                }
+            }
+
+            // Stream image from upstream, forwarding any range request
+            String range = ranges != null ? request.getHeader(HttpHeaders.RANGE) : null;
+            try (UpstreamImage image = imageProxyService.openImage(chapterId, filename, dataSaver, range)) {
+                writeUpstreamImage(image, contentType, etag, PAGE_CACHE_CONTROL, response);
+            }
+            return null;
 
-            return new ResponseEntity<>(imageBytes, headers, HttpStatus.OK);
+        } catch (UpstreamStreamException e) {
+            System.err.println("Proxy stream error for chapter " + chapterId + ", file " + filename + ": " + e.getMessage());
+            return handleStreamFailure(e, response);
 
         } catch (Exception e) {
             // Log error (in production, use proper logging framework)
             System.err.println("Proxy error for chapter " + chapterId + ", file " + filename + ": " + e.getMessage());
 
+            if (response.isCommitted()) {
+                // Client went away mid-transfer, nothing left to send
+                return null;
+            }
+
             // Determine appropriate status code
+            // Some I/O exceptions (e.g. ConnectException) carry no message
+            String error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+
             HttpStatus status = HttpStatus.INTERNAL_SERVER_ERROR;
-            String message = "Failed to fetch image: " + e.getMessage();
+            String message = "Failed to fetch image: " + error;
 
-            if (e.getMessage().contains("not found") || e.getMessage().contains("404")) {
+            if (error.contains("not found") || error.contains("404")) {
                 status = HttpStatus.NOT_FOUND;
                 message = "Image not found";
-            } else if (e.getMessage().contains("Filename not found")) {
+            } else if (error.contains("Filename not found")) {
                 status = HttpStatus.NOT_FOUND;
                 message = "Filename not found in chapter data";
-            } else if (e.getMessage().contains("At-Home")) {
+            } else if (error.contains("At-Home")) {
                 status = HttpStatus.BAD_GATEWAY;
                 message = "Failed to connect to MangaDex servers";
             }
@@ -146,6 +218,176 @@ public class ProxyController {
         }
     }
 
+    /**
+     * Check If-None-Match against the image's ETag and, on a match, turn the
+     * response into a bodiless 304 that still carries the caching headers
+     */
+    private boolean isNotModified(String etag, String cacheControl,
+            HttpServletRequest request, HttpServletResponse response) {
+        if (!new ServletWebRequest(request, response).checkNotModified(etag)) {
+            return false;
+        }
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        return true;
+    }
+
+    /**
+     * Parse the Range header, or return null when the full image should be sent:
+     * no Range, a malformed one (ignored per RFC 9110), or an If-Range that does
+     * not match the current ETag
+     */
+    private List<HttpRange> getRequestedRanges(String etag, HttpServletRequest request) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || !"GET".equals(request.getMethod())) {
+            return null;
+        }
+
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRange.equals(etag)) {
+            return null;
+        }
+
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+            return ranges.isEmpty() ? null : ranges;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Write a cached image to the response without copying it through the heap,
+     * streaming from the file the cache opened so eviction cannot pull it away
+     * mid-response. Byte ranges are answered with 206 (multipart/byteranges for
+     * several ranges) or 416.
+     */
+    private void writeCachedImage(ImageDiskCache.CachedImage image, MediaType contentType, String etag,
+            String cacheControl, List<HttpRange> ranges, HttpServletResponse response) throws IOException {
+        long length = image.getSize();
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        // Keep only satisfiable ranges as [start, end] pairs
+        List<long[]> satisfiable = new ArrayList<>();
+        long requestedBytes = 0;
+        if (ranges != null) {
+            for (HttpRange range : ranges) {
+                long start = range.getRangeStart(length);
+                long end = range.getRangeEnd(length);
+                if (start < length && start <= end) {
+                    satisfiable.add(new long[] { start, end });
+                    requestedBytes += end - start + 1;
+                }
+            }
+
+            if (satisfiable.isEmpty()) {
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.setContentLength(0);
+                return;
+            }
+        }
+
+        // No ranges, or overlapping ranges asking for more than the whole image
+        if (satisfiable.isEmpty() || requestedBytes > length) {
+            response.setStatus(HttpStatus.OK.value());
+            response.setContentType(contentType.toString());
+            response.setContentLengthLong(length);
+            image.transferTo(0, length, response.getOutputStream());
+            return;
+        }
+
+        response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+
+        if (satisfiable.size() == 1) {
+            long start = satisfiable.get(0)[0];
+            long end = satisfiable.get(0)[1];
+            response.setContentType(contentType.toString());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            response.setContentLengthLong(end - start + 1);
+            image.transferTo(start, end - start + 1, response.getOutputStream());
+            return;
+        }
+
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+
+        OutputStream out = response.getOutputStream();
+        for (long[] range : satisfiable) {
+            String partHeader = "\r\n--" + boundary + "\r\n"
+                    + "Content-Type: " + contentType + "\r\n"
+                    + "Content-Range: bytes " + range[0] + "-" + range[1] + "/" + length + "\r\n\r\n";
+            out.write(partHeader.getBytes(StandardCharsets.US_ASCII));
+            image.transferTo(range[0], range[1] - range[0] + 1, out);
+        }
+        out.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Stream an upstream image to the response as it arrives, so heap use per
+     * request is a small fixed buffer rather than the whole image. Partial
+     * responses to a forwarded Range are passed through with their status,
+     * Content-Range and (for multipart) Content-Type.
+     */
+    private void writeUpstreamImage(UpstreamImage image, MediaType contentType, String etag, String cacheControl,
+            HttpServletResponse response) throws IOException {
+        response.setStatus(image.getStatusCode());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (image.getLastModified() != null) {
+            response.setHeader(HttpHeaders.LAST_MODIFIED, image.getLastModified());
+        }
+        if (image.getContentRange() != null) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, image.getContentRange());
+        }
+
+        if (image.getStatusCode() == HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value()) {
+            response.setContentLength(0);
+            return;
+        }
+
+        String upstreamType = image.getContentType();
+        boolean multipart = upstreamType != null && upstreamType.startsWith("multipart/byteranges");
+        response.setContentType(multipart ? upstreamType : contentType.toString());
+        if (image.getContentLength() >= 0) {
+            response.setContentLengthLong(image.getContentLength());
+        }
+
+        image.transferTo(response.getOutputStream());
+    }
+
+    /**
+     * Handle an upstream failure in the middle of a streamed image. If nothing has
+     * reached the client yet it gets a 502; otherwise the exception is rethrown so
+     * the container aborts the connection and the client sees a truncated transfer
+     * instead of a silently short image.
+     */
+    private ResponseEntity<?> handleStreamFailure(UpstreamStreamException e, HttpServletResponse response)
+            throws UpstreamStreamException {
+        if (response.isCommitted()) {
+            throw e;
+        }
+
+        // Drop the image's status and headers (ETag, Content-Range, Content-Type) so the
+        // 502 is not labelled as part of an image, but keep the CORS headers set before us
+        Map<String, List<String>> kept = new LinkedHashMap<>();
+        for (String name : response.getHeaderNames()) {
+            if (name.regionMatches(true, 0, "Access-Control-", 0, 15) || name.equalsIgnoreCase(HttpHeaders.VARY)) {
+                kept.put(name, new ArrayList<>(response.getHeaders(name)));
+            }
+        }
+        response.reset();
+        kept.forEach((name, values) -> values.forEach(value -> response.addHeader(name, value)));
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+
+        return ResponseEntity.status(HttpStatus.BAD_GATEWAY)
+                .body(createError(HttpStatus.BAD_GATEWAY.value(), "Image transfer from MangaDex failed"));
+    }
+
     /**
      * Determine media type from filename extension
      */
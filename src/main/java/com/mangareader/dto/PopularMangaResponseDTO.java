@@ -1,5 +1,7 @@
 package com.mangareader.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.util.List;
 
 /**
@@ -11,6 +13,10 @@ public class PopularMangaResponseDTO {
     private Integer offset;
     private List<MangaItemDTO> results;
 
+    // Opaque cursor for the next page (followers ranking only)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String nextCursor;
+
     public PopularMangaResponseDTO() {
     }
 
@@ -52,4 +58,12 @@ public class PopularMangaResponseDTO {
     public void setResults(List<MangaItemDTO> results) {
         this.results = results;
     }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
 }
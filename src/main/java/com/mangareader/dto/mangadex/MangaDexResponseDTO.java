@@ -109,6 +109,7 @@ public class MangaDexResponseDTO {
     public static class MangaDexAttributes {
         private Map<String, String> title;
         private Map<String, String> description;
+        private String createdAt;
 
         public Map<String, String> getTitle() {
             return title;
@@ -125,6 +126,14 @@ public class MangaDexResponseDTO {
         public void setDescription(Map<String, String> description) {
             this.description = description;
         }
+
+        public String getCreatedAt() {
+            return createdAt;
+        }
+
+        public void setCreatedAt(String createdAt) {
+            this.createdAt = createdAt;
+        }
     }
 
     @JsonIgnoreProperties(ignoreUnknown = true)
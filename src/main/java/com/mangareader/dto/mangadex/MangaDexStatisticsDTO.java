@@ -84,7 +84,7 @@ public class MangaDexStatisticsDTO {
     @JsonIgnoreProperties(ignoreUnknown = true)
     public static class RatingInfo {
         private Double average;
-        private Integer bayesian;
+        private Double bayesian;
 
         public Double getAverage() {
             return average;
@@ -94,11 +94,11 @@ public class MangaDexStatisticsDTO {
             this.average = average;
         }
 
-        public Integer getBayesian() {
+        public Double getBayesian() {
             return bayesian;
         }
 
-        public void setBayesian(Integer bayesian) {
+        public void setBayesian(Double bayesian) {
             this.bayesian = bayesian;
         }
     }
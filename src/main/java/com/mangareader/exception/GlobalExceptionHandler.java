@@ -22,6 +22,15 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
     }
 
+    /**
+     * An image stream failed after part of it was sent. No error body can be written
+     * at this point, so rethrow and let the container abort the connection.
+     */
+    @ExceptionHandler(UpstreamStreamException.class)
+    public void handleUpstreamStreamFailure(UpstreamStreamException ex) throws UpstreamStreamException {
+        throw ex;
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<Map<String, Object>> handleGenericException(Exception ex) {
         Map<String, Object> error = new HashMap<>();
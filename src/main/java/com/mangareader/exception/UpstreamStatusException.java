@@ -0,0 +1,22 @@
+package com.mangareader.exception;
+
+import java.io.IOException;
+
+/**
+ * Thrown when an upstream image server answers with an unexpected HTTP status.
+ */
+public class UpstreamStatusException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+
+    public UpstreamStatusException(String message, int statusCode) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
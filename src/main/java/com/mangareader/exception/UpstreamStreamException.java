@@ -0,0 +1,16 @@
+package com.mangareader.exception;
+
+import java.io.IOException;
+
+/**
+ * Thrown when an upstream image download fails while its bytes are already
+ * being streamed to the client.
+ */
+public class UpstreamStreamException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public UpstreamStreamException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,25 @@
+package com.mangareader.exception;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of calling upstream while the endpoint's circuit breaker is open.
+ */
+public class UpstreamUnavailableException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfterSeconds;
+
+    public UpstreamUnavailableException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Seconds until the breaker lets calls through again
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
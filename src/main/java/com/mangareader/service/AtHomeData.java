@@ -0,0 +1,79 @@
+package com.mangareader.service;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * At-Home server data for a chapter: the assigned MangaDex@Home node, the
+ * chapter hash and the page filenames for both qualities.
+ *
+ * Filenames are indexed by page position when the entry is built, so
+ * validating a requested page and finding its neighbours is O(1).
+ */
+public class AtHomeData {
+    final String baseUrl;
+    final String hash;
+    final String[] data;
+    final String[] dataSaver;
+
+    // Read-only views handed out to callers, so the shared cached arrays cannot be changed
+    private final List<String> dataView;
+    private final List<String> dataSaverView;
+
+    // filename -> page position, per quality
+    private final Map<String, Integer> dataIndex;
+    private final Map<String, Integer> dataSaverIndex;
+
+    AtHomeData(String baseUrl, String hash, String[] data, String[] dataSaver) {
+        this.baseUrl = baseUrl;
+        this.hash = hash;
+        this.data = data;
+        this.dataSaver = dataSaver;
+        this.dataView = Collections.unmodifiableList(Arrays.asList(data));
+        this.dataSaverView = Collections.unmodifiableList(Arrays.asList(dataSaver));
+        this.dataIndex = buildIndex(data);
+        this.dataSaverIndex = buildIndex(dataSaver);
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    /**
+     * Page filenames in reading order for the given quality, as an unmodifiable list
+     */
+    public List<String> getFiles(boolean useDataSaver) {
+        return useDataSaver ? dataSaverView : dataView;
+    }
+
+    /**
+     * Zero-based page position of a filename, or -1 if it is not part of the chapter
+     */
+    int getPosition(String filename, boolean useDataSaver) {
+        Integer position = (useDataSaver ? dataSaverIndex : dataIndex).get(filename);
+        return position != null ? position : -1;
+    }
+
+    /**
+     * Filename at a page position, or null if the position is out of range
+     */
+    String getFilename(int position, boolean useDataSaver) {
+        String[] files = useDataSaver ? dataSaver : data;
+        return position >= 0 && position < files.length ? files[position] : null;
+    }
+
+    private static Map<String, Integer> buildIndex(String[] files) {
+        Map<String, Integer> index = new HashMap<>(Math.max(16, files.length * 4 / 3 + 1));
+        for (int i = 0; i < files.length; i++) {
+            index.putIfAbsent(files[i], i);
+        }
+        return index;
+    }
+}
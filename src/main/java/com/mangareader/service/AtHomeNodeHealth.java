@@ -0,0 +1,126 @@
+package com.mangareader.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks how MangaDex@Home nodes are performing.
+ *
+ * Each node keeps a moving average of its time to first byte and a count of
+ * consecutive failures. A node that fails repeatedly or becomes too slow is
+ * quarantined for a while, and requests for its chapters are moved to a fresh
+ * At-Home assignment or to the uploads origin instead.
+ */
+@Component
+public class AtHomeNodeHealth {
+
+    private static final Logger logger = LoggerFactory.getLogger(AtHomeNodeHealth.class);
+
+    // Weight of the newest sample in the latency average
+    private static final double LATENCY_ALPHA = 0.3;
+    private static final int MIN_LATENCY_SAMPLES = 3;
+    private static final long IDLE_NODE_MS = 60 * 60 * 1000;
+
+    private final int failureThreshold;
+    private final long slowThresholdMs;
+    private final long quarantineMs;
+
+    // node (scheme://host:port) -> stats
+    private final Map<String, NodeStats> nodes = new ConcurrentHashMap<>();
+
+    public AtHomeNodeHealth(@Value("${app.at-home.node.failure-threshold:3}") int failureThreshold,
+            @Value("${app.at-home.node.slow-threshold-ms:5000}") long slowThresholdMs,
+            @Value("${app.at-home.node.quarantine-seconds:120}") long quarantineSeconds) {
+        this.failureThreshold = failureThreshold;
+        this.slowThresholdMs = slowThresholdMs;
+        this.quarantineMs = quarantineSeconds * 1000;
+    }
+
+    /**
+     * False while the node serving the given base URL is quarantined
+     */
+    public boolean isHealthy(String baseUrl) {
+        NodeStats stats = nodes.get(nodeOf(baseUrl));
+        return stats == null || System.currentTimeMillis() >= stats.quarantinedUntil;
+    }
+
+    /**
+     * Record a response from a node, with its time to first byte
+     */
+    public void recordSuccess(String baseUrl, long latencyMs) {
+        String node = nodeOf(baseUrl);
+        NodeStats stats = nodes.computeIfAbsent(node, key -> new NodeStats());
+
+        synchronized (stats) {
+            stats.lastUsed = System.currentTimeMillis();
+            stats.consecutiveFailures = 0;
+            stats.averageLatencyMs = stats.samples == 0
+                    ? latencyMs
+                    : LATENCY_ALPHA * latencyMs + (1 - LATENCY_ALPHA) * stats.averageLatencyMs;
+            stats.samples++;
+
+            if (stats.samples >= MIN_LATENCY_SAMPLES && stats.averageLatencyMs > slowThresholdMs) {
+                logger.warn("@Home node {} is slow ({} ms average), quarantining", node,
+                        Math.round(stats.averageLatencyMs));
+                quarantine(stats);
+            }
+        }
+    }
+
+    /**
+     * Record a failed request (connection error, timeout or server error) to a node
+     */
+    public void recordFailure(String baseUrl) {
+        String node = nodeOf(baseUrl);
+        NodeStats stats = nodes.computeIfAbsent(node, key -> new NodeStats());
+
+        synchronized (stats) {
+            stats.lastUsed = System.currentTimeMillis();
+            stats.consecutiveFailures++;
+
+            if (stats.consecutiveFailures >= failureThreshold) {
+                logger.warn("@Home node {} failed {} times in a row, quarantining", node,
+                        stats.consecutiveFailures);
+                quarantine(stats);
+            }
+        }
+
+        // Nodes come and go; forget the ones we have not talked to in a while
+        long now = System.currentTimeMillis();
+        nodes.values().removeIf(other -> now - other.lastUsed > IDLE_NODE_MS);
+    }
+
+    private void quarantine(NodeStats stats) {
+        stats.quarantinedUntil = System.currentTimeMillis() + quarantineMs;
+        // Start from a clean slate once the quarantine is over
+        stats.consecutiveFailures = 0;
+        stats.samples = 0;
+        stats.averageLatencyMs = 0;
+    }
+
+    private static String nodeOf(String baseUrl) {
+        try {
+            URI uri = URI.create(baseUrl);
+            return uri.getScheme() + "://" + uri.getHost() + ":" + uri.getPort();
+        } catch (IllegalArgumentException e) {
+            return baseUrl;
+        }
+    }
+
+    /**
+     * Latency and failure counters for one node
+     */
+    private static class NodeStats {
+        double averageLatencyMs;
+        int samples;
+        int consecutiveFailures;
+        volatile long quarantinedUntil;
+        volatile long lastUsed = System.currentTimeMillis();
+    }
+}
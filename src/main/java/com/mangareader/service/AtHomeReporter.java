@@ -0,0 +1,101 @@
+package com.mangareader.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mangareader.client.UpstreamClient;
+import com.mangareader.client.UpstreamEndpoint;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reports the outcome of image loads from MangaDex@Home nodes to the network's
+ * report endpoint, which MangaDex uses to steer clients away from bad nodes.
+ *
+ * Reports are sent in the background and dropped when the queue is full.
+ * Loads from the uploads origin are not reported, as MangaDex asks.
+ */
+@Component
+public class AtHomeReporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(AtHomeReporter.class);
+    private static final String REPORT_URL = "https://api.mangadex.network/report";
+
+    private final boolean enabled;
+    private final ObjectMapper mapper;
+    private final UpstreamClient upstreamClient;
+    private final ThreadPoolExecutor executor;
+
+    public AtHomeReporter(UpstreamClient upstreamClient, ObjectMapper mapper,
+            @Value("${app.at-home.report.enabled:true}") boolean enabled) {
+        this.mapper = mapper;
+        this.enabled = enabled;
+        this.upstreamClient = upstreamClient;
+        this.executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(256),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "at-home-report");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Queue a report for an image load
+     *
+     * @param url        full image URL that was requested
+     * @param success    whether the image was received in full
+     * @param cached     whether the node served it from its cache (X-Cache: HIT)
+     * @param bytes      bytes received
+     * @param durationMs time taken for the whole request
+     */
+    public void report(String url, boolean success, boolean cached, long bytes, long durationMs) {
+        if (!enabled || url.contains("mangadex.org")) {
+            return;
+        }
+
+        ObjectNode body = mapper.createObjectNode()
+                .put("url", url)
+                .put("success", success)
+                .put("cached", cached)
+                .put("bytes", bytes)
+                .put("duration", durationMs);
+
+        try {
+            executor.execute(() -> send(body));
+        } catch (RejectedExecutionException e) {
+            logger.debug("@Home report queue full, dropping report for {}", url);
+        }
+    }
+
+    private void send(ObjectNode body) {
+        try {
+            HttpRequest request = upstreamClient.request(REPORT_URL, UpstreamEndpoint.REPORT)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(mapper.writeValueAsString(body)))
+                    .build();
+
+            HttpResponse<Void> response = upstreamClient.send(request, UpstreamEndpoint.REPORT,
+                    HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() != 200) {
+                logger.debug("@Home report rejected: HTTP {}", response.statusCode());
+            }
+        } catch (Exception e) {
+            logger.debug("@Home report failed: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+}
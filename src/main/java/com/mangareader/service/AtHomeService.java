@@ -0,0 +1,320 @@
+package com.mangareader.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mangareader.client.UpstreamClient;
+import com.mangareader.client.UpstreamEndpoint;
+import com.mangareader.client.UpstreamPriority;
+import com.mangareader.exception.UpstreamStatusException;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Resolves chapters to their MangaDex@Home server assignment.
+ *
+ * MangaDex rate-limits /at-home/server hard, so responses are cached per chapter:
+ * <ul>
+ * <li>concurrent misses for the same chapter share one upstream call</li>
+ * <li>entries past the refresh age are served while a background refresh runs,
+ * so readers rarely wait on an expired entry</li>
+ * <li>if a refresh fails, entries keep being served until the max stale age</li>
+ * <li>expired entries are swept on a schedule and the entry count is capped</li>
+ * </ul>
+ * The chapter pages endpoint and the image proxy both read from this cache, so
+ * opening a chapter and loading its pages costs one /at-home/server call.
+ */
+@Service
+public class AtHomeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AtHomeService.class);
+
+    // Don't replace an assignment more often than this, even if its node keeps failing
+    private static final long MIN_REFRESH_INTERVAL_MS = 10 * 1000;
+
+    private final UpstreamClient upstreamClient;
+    private final ObjectMapper mapper;
+
+    private final long refreshAfterMs;
+    private final long ttlMs;
+    private final long maxStaleMs;
+    private final int maxEntries;
+
+    // Longest a blocking caller waits for a load: queued for a rate limit token, then the call itself
+    private final long loadTimeoutMs;
+
+    // chapterId -> cached At-Home data
+    private final Map<String, CachedAtHomeData> cache = new ConcurrentHashMap<>();
+
+    // chapterId -> upstream call in flight, shared by concurrent callers
+    private final Map<String, CompletableFuture<AtHomeData>> loads = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService scheduler;
+
+    public AtHomeService(UpstreamClient upstreamClient, ObjectMapper mapper,
+            @Value("${app.at-home.refresh-after-seconds:120}") long refreshAfterSeconds,
+            @Value("${app.at-home.ttl-seconds:180}") long ttlSeconds,
+            @Value("${app.at-home.max-stale-seconds:600}") long maxStaleSeconds,
+            @Value("${app.at-home.max-entries:2000}") int maxEntries,
+            @Value("${app.upstream.rate-limit.max-wait-seconds:30}") long rateLimitMaxWaitSeconds,
+            @Value("${app.upstream.timeout.at-home-seconds:10}") long atHomeTimeoutSeconds) {
+        this.upstreamClient = upstreamClient;
+        this.mapper = mapper;
+        this.refreshAfterMs = refreshAfterSeconds * 1000;
+        this.ttlMs = ttlSeconds * 1000;
+        this.maxStaleMs = Math.max(maxStaleSeconds, ttlSeconds) * 1000;
+        this.maxEntries = maxEntries;
+        this.loadTimeoutMs = (rateLimitMaxWaitSeconds + atHomeTimeoutSeconds) * 1000;
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "at-home-cache");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::sweep, 30, 30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * At-Home server data for a chapter, from cache when possible. Completes with
+     * an IOException if it cannot be fetched and no stale entry is left to serve.
+     */
+    public CompletableFuture<AtHomeData> getAsync(String chapterId) {
+        CachedAtHomeData cached = cache.get(chapterId);
+
+        if (cached != null) {
+            long now = System.currentTimeMillis();
+            cached.lastAccess = now;
+            long age = now - cached.fetchedAt;
+
+            if (age <= ttlMs) {
+                if (age > refreshAfterMs) {
+                    refreshInBackground(chapterId);
+                }
+                return CompletableFuture.completedFuture(cached.data);
+            }
+        }
+
+        return load(chapterId).handle((data, error) -> {
+            if (error == null) {
+                return data;
+            }
+            AtHomeData stale = staleData(chapterId, UpstreamClient.unwrap(error));
+            if (stale == null) {
+                throw new CompletionException(UpstreamClient.unwrap(error));
+            }
+            return stale;
+        });
+    }
+
+    /**
+     * Blocking {@link #getAsync(String)}
+     */
+    AtHomeData get(String chapterId) throws IOException {
+        try {
+            return await(getAsync(chapterId));
+        } catch (IOException e) {
+            // Timed out waiting; the load may still be queued
+            AtHomeData stale = staleData(chapterId, e);
+            if (stale == null) {
+                throw e;
+            }
+            return stale;
+        }
+    }
+
+    /**
+     * Serve the last known assignment rather than failing the page outright, as long
+     * as it is within the max stale age; null if there is none
+     */
+    private AtHomeData staleData(String chapterId, Throwable error) {
+        CachedAtHomeData cached = cache.get(chapterId);
+        if (cached == null || System.currentTimeMillis() - cached.fetchedAt > maxStaleMs) {
+            return null;
+        }
+        logger.warn("At-Home refresh for chapter {} failed, serving stale data: {}",
+                chapterId, error.getMessage());
+        return cached.data;
+    }
+
+    /**
+     * Get a new At-Home assignment for a chapter whose node at the given base URL
+     * misbehaved. If the cached entry already points elsewhere (another request
+     * refreshed it first) that entry is returned instead of fetching again.
+     */
+    AtHomeData refresh(String chapterId, String failedBaseUrl) throws IOException {
+        CachedAtHomeData cached = cache.get(chapterId);
+        if (cached != null && (!cached.data.baseUrl.equals(failedBaseUrl)
+                || System.currentTimeMillis() - cached.fetchedAt < MIN_REFRESH_INTERVAL_MS)) {
+            return cached.data;
+        }
+        return await(load(chapterId));
+    }
+
+    private void refreshInBackground(String chapterId) {
+        if (!loads.containsKey(chapterId)) {
+            UpstreamPriority.runInBackground(() -> load(chapterId));
+        }
+    }
+
+    /**
+     * Start (or join) the upstream call for a chapter; concurrent callers share one
+     * future, which fails with an IOException
+     */
+    private CompletableFuture<AtHomeData> load(String chapterId) {
+        CompletableFuture<AtHomeData> created = new CompletableFuture<>();
+        CompletableFuture<AtHomeData> existing = loads.putIfAbsent(chapterId, created);
+        if (existing != null) {
+            return existing;
+        }
+
+        fetch(chapterId).whenComplete((data, error) -> {
+            if (error == null) {
+                cache.put(chapterId, new CachedAtHomeData(data));
+                if (cache.size() > maxEntries) {
+                    evictLeastRecentlyUsed();
+                }
+                created.complete(data);
+            } else {
+                Throwable cause = UpstreamClient.unwrap(error);
+                created.completeExceptionally(cause instanceof IOException ? cause
+                        : new IOException("At-Home fetch failed: " + cause.getMessage(), cause));
+            }
+            loads.remove(chapterId, created);
+        });
+        return created;
+    }
+
+    private AtHomeData await(CompletableFuture<AtHomeData> future) throws IOException {
+        try {
+            return future.get(loadTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause.getMessage(), cause);
+        } catch (TimeoutException e) {
+            throw new IOException("At-Home fetch timed out", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("At-Home fetch interrupted", e);
+        }
+    }
+
+    /**
+     * Call /at-home/server/{chapterId} and parse the response
+     */
+    private CompletableFuture<AtHomeData> fetch(String chapterId) {
+        String atHomeUrl = "https://api.mangadex.org/at-home/server/" + chapterId;
+
+        return upstreamClient.getBytesAsync(upstreamClient.request(atHomeUrl, UpstreamEndpoint.AT_HOME)
+                        .header("Cache-Control", "no-cache")
+                        .GET(), UpstreamEndpoint.AT_HOME)
+                .handle((body, error) -> {
+                    try {
+                        if (error != null) {
+                            Throwable cause = UpstreamClient.unwrap(error);
+                            if (cause instanceof UpstreamStatusException) {
+                                throw new IOException("At-Home server returned HTTP "
+                                        + ((UpstreamStatusException) cause).getStatusCode(), cause);
+                            }
+                            throw new CompletionException(cause);
+                        }
+                        return parse(body);
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                });
+    }
+
+    private AtHomeData parse(byte[] body) throws IOException {
+        // Parse response
+        JsonNode root = mapper.readTree(body);
+        String baseUrl = root.path("baseUrl").asText();
+        JsonNode chapter = root.path("chapter");
+        String hash = chapter.path("hash").asText();
+
+        JsonNode dataNode = chapter.path("data");
+        JsonNode dataSaverNode = chapter.path("dataSaver");
+
+        if (baseUrl.isEmpty() || hash.isEmpty()) {
+            throw new IOException("Invalid At-Home response: missing baseUrl or hash");
+        }
+
+        String[] data = jsonArrayToStringArray(dataNode);
+        String[] dataSaver = jsonArrayToStringArray(dataSaverNode);
+
+        if (data.length == 0) {
+            throw new IOException("No page data found in At-Home response");
+        }
+
+        return new AtHomeData(baseUrl, hash, data, dataSaver);
+    }
+
+    /**
+     * Convert JSON array to String array
+     */
+    private String[] jsonArrayToStringArray(JsonNode arrayNode) {
+        if (arrayNode == null || !arrayNode.isArray()) {
+            return new String[0];
+        }
+
+        String[] result = new String[arrayNode.size()];
+        for (int i = 0; i < arrayNode.size(); i++) {
+            result[i] = arrayNode.get(i).asText();
+        }
+        return result;
+    }
+
+    /**
+     * Remove entries too old to be served even as stale data
+     */
+    private void sweep() {
+        long now = System.currentTimeMillis();
+        cache.entrySet().removeIf(entry -> now - entry.getValue().fetchedAt > maxStaleMs);
+    }
+
+    /**
+     * Enforce the entry cap by dropping the least recently read tenth of the cache,
+     * so the sort is amortized over many inserts
+     */
+    private synchronized void evictLeastRecentlyUsed() {
+        if (cache.size() <= maxEntries) {
+            return;
+        }
+
+        List<Map.Entry<String, CachedAtHomeData>> entries = new ArrayList<>(cache.entrySet());
+        entries.sort(Comparator.comparingLong(entry -> entry.getValue().lastAccess));
+
+        int toRemove = cache.size() - maxEntries + Math.max(1, maxEntries / 10);
+        for (int i = 0; i < toRemove && i < entries.size(); i++) {
+            cache.remove(entries.get(i).getKey(), entries.get(i).getValue());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Cached At-Home data with fetch and access times
+     */
+    private static class CachedAtHomeData {
+        final AtHomeData data;
+        final long fetchedAt;
+        volatile long lastAccess;
+
+        CachedAtHomeData(AtHomeData data) {
+            this.data = data;
+            this.fetchedAt = System.currentTimeMillis();
+            this.lastAccess = fetchedAt;
+        }
+    }
+}
@@ -0,0 +1,569 @@
+package com.mangareader.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory search index over the MangaDex catalogue, rebuilt in the background by
+ * {@link PopularityCrawler}.
+ *
+ * Titles (in every language), alternative titles, tags, status and year are split into
+ * normalized terms. The terms are kept in one sorted array with a posting list of
+ * document numbers each, so a query term can match exactly, as a prefix (a range of the
+ * array) or, if neither finds anything, within one or two typos. Documents are numbered
+ * by followers, so among equally good matches the most followed manga come first.
+ *
+ * The index is immutable and swapped in whole, so searches never lock.
+ */
+@Component
+public class CatalogueIndex {
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    // Query terms beyond this are ignored
+    private static final int MAX_QUERY_TERMS = 8;
+
+    // Match weights per query term
+    private static final int EXACT = 3;
+    private static final int PREFIX = 2;
+    private static final int FUZZY = 1;
+
+    private final ObjectMapper mapper;
+    private final int maxResults;
+
+    private volatile Snapshot snapshot;
+
+    // Scoring arrays of finished queries, reused so a search allocates little
+    private final Queue<Scratch> scratchPool = new ConcurrentLinkedQueue<>();
+
+    public CatalogueIndex(ObjectMapper mapper,
+            @Value("${app.catalogue.search-results:10}") int maxResults) {
+        this.mapper = mapper;
+        this.maxResults = maxResults;
+    }
+
+    /**
+     * True once a first catalogue has been indexed
+     */
+    public boolean isReady() {
+        return snapshot != null;
+    }
+
+    public int size() {
+        Snapshot current = snapshot;
+        return current != null ? current.documents.length : 0;
+    }
+
+    public int termCount() {
+        Snapshot current = snapshot;
+        return current != null ? current.terms.length : 0;
+    }
+
+    /**
+     * Replace the index with a freshly crawled catalogue
+     */
+    public void replace(Collection<Document> catalogue) {
+        Document[] documents = catalogue.toArray(new Document[0]);
+        Arrays.sort(documents, Comparator.comparingInt((Document d) -> d.followers).reversed()
+                .thenComparing(d -> d.id));
+
+        // Documents are added in order, so each posting list comes out sorted
+        Map<String, IntList> postings = new HashMap<>();
+        for (int doc = 0; doc < documents.length; doc++) {
+            for (String term : documents[doc].terms) {
+                IntList list = postings.computeIfAbsent(term, t -> new IntList());
+                if (list.size == 0 || list.values[list.size - 1] != doc) {
+                    list.add(doc);
+                }
+            }
+            documents[doc].terms = null;
+        }
+
+        String[] terms = postings.keySet().toArray(new String[0]);
+        Arrays.sort(terms);
+        int[][] lists = new int[terms.length][];
+        for (int i = 0; i < terms.length; i++) {
+            lists[i] = postings.get(terms[i]).toArray();
+        }
+
+        snapshot = new Snapshot(documents, terms, lists);
+    }
+
+    /**
+     * Search the catalogue. Every query term has to match a document; the last one
+     * may be incomplete. Results carry a subset of a MangaDex search result's fields,
+     * see {@link Document#toJson(ObjectMapper)}.
+     */
+    public ArrayNode search(String query) {
+        Snapshot current = snapshot;
+        ArrayNode results = mapper.createArrayNode();
+        if (current == null) {
+            return results;
+        }
+
+        List<String> queryTerms = normalize(query);
+        if (queryTerms.size() > MAX_QUERY_TERMS) {
+            queryTerms = queryTerms.subList(0, MAX_QUERY_TERMS);
+        }
+        if (queryTerms.isEmpty()) {
+            return results;
+        }
+
+        // Resolve each query term to the index terms it matches
+        List<TermMatches> matches = new ArrayList<>(queryTerms.size());
+        for (String term : queryTerms) {
+            TermMatches termMatches = resolve(current, term);
+            if (termMatches.terms.size == 0) {
+                // Nothing matches this term, so nothing matches the query
+                return results;
+            }
+            matches.add(termMatches);
+        }
+
+        int[] top = matches.size() == 1 ? topForTerm(current, matches.get(0)) : topForAllTerms(current, matches);
+        for (int doc : top) {
+            results.add(current.documents[doc].toJson(mapper));
+        }
+        return results;
+    }
+
+    /**
+     * Index terms matching a query term: exactly and as a prefix (a contiguous range of
+     * the sorted terms) or, if neither finds anything, within one or two typos
+     */
+    private static TermMatches resolve(Snapshot current, String term) {
+        TermMatches matches = new TermMatches();
+
+        int from = lowerBound(current.terms, term);
+        boolean prefixAllowed = term.length() > 1;
+        for (int i = from; i < current.terms.length && current.terms[i].startsWith(term); i++) {
+            boolean exact = current.terms[i].length() == term.length();
+            if (!exact && !prefixAllowed) {
+                break;
+            }
+            matches.add(i, exact ? EXACT : PREFIX, current.postings[i].length);
+        }
+        if (matches.terms.size > 0 || term.length() < 4) {
+            return matches;
+        }
+
+        // Typo tolerance: terms with the same first letter within the edit budget
+        int maxEdits = term.length() >= 8 ? 2 : 1;
+        String first = term.substring(0, Character.charCount(term.codePointAt(0)));
+        new TypoScan(term, maxEdits).scan(current, lowerBound(current.terms, first),
+                lowerBound(current.terms, first + Character.MAX_VALUE), matches);
+        return matches;
+    }
+
+    /**
+     * Best documents for a single query term. Posting lists are sorted by popularity,
+     * so for each weight only the head of each list is read, never the whole union.
+     */
+    private int[] topForTerm(Snapshot current, TermMatches matches) {
+        IntList top = new IntList();
+        for (int weight = EXACT; weight >= FUZZY && top.size < maxResults; weight--) {
+            // Bounded max-heap of the most popular documents at this weight
+            PriorityQueue<Integer> best = new PriorityQueue<>(Comparator.reverseOrder());
+            int needed = maxResults - top.size;
+            for (int m = 0; m < matches.terms.size; m++) {
+                if (matches.weights.values[m] != weight) {
+                    continue;
+                }
+                for (int doc : current.postings[matches.terms.values[m]]) {
+                    if (best.size() == needed && doc >= best.peek()) {
+                        break;
+                    }
+                    if (!best.contains(doc) && !top.contains(doc)) {
+                        best.add(doc);
+                        if (best.size() > needed) {
+                            best.poll();
+                        }
+                    }
+                }
+            }
+
+            int[] tier = new int[best.size()];
+            for (int i = tier.length - 1; i >= 0; i--) {
+                tier[i] = best.poll();
+            }
+            for (int doc : tier) {
+                top.add(doc);
+            }
+        }
+        return top.toArray();
+    }
+
+    /**
+     * Best documents matching every query term. The most selective term is scored
+     * first; later terms only add to documents that matched all terms before them.
+     */
+    private int[] topForAllTerms(Snapshot current, List<TermMatches> matches) {
+        List<TermMatches> ordered = new ArrayList<>(matches);
+        ordered.sort(Comparator.comparingLong(termMatches -> termMatches.postingCount));
+
+        Scratch work = acquireScratch(current.documents.length);
+        try {
+            for (int t = 0; t < ordered.size(); t++) {
+                TermMatches termMatches = ordered.get(t);
+                for (int m = 0; m < termMatches.terms.size; m++) {
+                    work.add(current.postings[termMatches.terms.values[m]], t + 1,
+                            termMatches.weights.values[m]);
+                }
+            }
+            return topDocuments(work, ordered.size());
+        } finally {
+            work.reset();
+            scratchPool.offer(work);
+        }
+    }
+
+    /**
+     * Best scored documents: highest score first, then most followed
+     */
+    private int[] topDocuments(Scratch work, int termCount) {
+        // Small bounded heap whose root is the weakest kept document
+        PriorityQueue<long[]> heap = new PriorityQueue<>(maxResults + 1,
+                Comparator.<long[]>comparingLong(entry -> entry[1]).thenComparingLong(entry -> -entry[0]));
+        for (int i = 0; i < work.touched.size; i++) {
+            int doc = work.touched.values[i];
+            if (work.matchedTerms[doc] != termCount) {
+                continue;
+            }
+            heap.add(new long[] { doc, work.score[doc] });
+            if (heap.size() > maxResults) {
+                heap.poll();
+            }
+        }
+
+        int[] top = new int[heap.size()];
+        for (int i = top.length - 1; i >= 0; i--) {
+            top[i] = (int) heap.poll()[0];
+        }
+        return top;
+    }
+
+    /**
+     * A pooled scratch sized for the current index; those sized for an older one are dropped
+     */
+    private Scratch acquireScratch(int size) {
+        Scratch work;
+        while ((work = scratchPool.poll()) != null) {
+            if (work.score.length == size) {
+                return work;
+            }
+        }
+        return new Scratch(size);
+    }
+
+    /**
+     * Lower-case, strip accents and split into terms
+     */
+    public static List<String> normalize(String text) {
+        if (text == null) {
+            return Collections.emptyList();
+        }
+        String folded = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        List<String> terms = new ArrayList<>();
+        for (String term : SEPARATORS.split(folded)) {
+            if (!term.isEmpty()) {
+                terms.add(term);
+            }
+        }
+        return terms;
+    }
+
+    private static int lowerBound(String[] terms, String key) {
+        int low = 0;
+        int high = terms.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (terms[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Finds the terms within an edit distance of a query term by walking a range of the
+     * sorted terms. One Levenshtein row is kept per character of the candidate, so a
+     * candidate only computes the rows after the prefix it shares with the previous one,
+     * and once a row exceeds the budget every term with that prefix is skipped.
+     */
+    private static class TypoScan {
+        private final String term;
+        private final int maxEdits;
+        private final int[][] rows;
+
+        TypoScan(String term, int maxEdits) {
+            this.term = term;
+            this.maxEdits = maxEdits;
+            // No candidate longer than this can stay within the budget
+            this.rows = new int[term.length() + maxEdits + 2][term.length() + 1];
+            for (int j = 0; j <= term.length(); j++) {
+                rows[0][j] = j;
+            }
+        }
+
+        void scan(Snapshot current, int from, int to, TermMatches matches) {
+            String previous = "";
+            int i = from;
+            while (i < to) {
+                String candidate = current.terms[i];
+                int shared = commonPrefix(previous, candidate);
+
+                int row = shared + 1;
+                for (; row <= candidate.length(); row++) {
+                    if (!computeRow(row, candidate.charAt(row - 1))) {
+                        break;
+                    }
+                }
+
+                if (row <= candidate.length()) {
+                    // The first row characters cannot be completed within the budget
+                    String deadPrefix = candidate.substring(0, row);
+                    i = Math.max(i + 1, lowerBound(current.terms, deadPrefix + Character.MAX_VALUE));
+                    previous = candidate.substring(0, row - 1);
+                    continue;
+                }
+
+                if (rows[candidate.length()][term.length()] <= maxEdits) {
+                    matches.add(i, FUZZY, current.postings[i].length);
+                }
+                previous = candidate;
+                i++;
+            }
+        }
+
+        /**
+         * Fill in the row for the given candidate character; false if every cell is over budget
+         */
+        private boolean computeRow(int row, char c) {
+            if (row >= rows.length) {
+                return false;
+            }
+            int[] above = rows[row - 1];
+            int[] cells = rows[row];
+            cells[0] = row;
+            int rowMin = row;
+            for (int j = 1; j <= term.length(); j++) {
+                int cost = term.charAt(j - 1) == c ? 0 : 1;
+                cells[j] = Math.min(Math.min(cells[j - 1] + 1, above[j] + 1), above[j - 1] + cost);
+                rowMin = Math.min(rowMin, cells[j]);
+            }
+            return rowMin <= maxEdits;
+        }
+
+        private static int commonPrefix(String a, String b) {
+            int length = Math.min(a.length(), b.length());
+            int i = 0;
+            while (i < length && a.charAt(i) == b.charAt(i)) {
+                i++;
+            }
+            return i;
+        }
+    }
+
+    /**
+     * A manga as stored in the index: what a search result shows, plus its terms
+     * until the index is built
+     */
+    public static class Document {
+        private final String id;
+        private final String title;
+        private final String[] tags;
+        private final String status;
+        private final Integer year;
+        private final String cover;
+        private final int followers;
+        private String[] terms;
+
+        /**
+         * @param manga     simplified manga as produced by MangaDexParser
+         * @param titles    every title and alternative title
+         * @param followers follow count, or null if unknown
+         */
+        public Document(JsonNode manga, List<String> titles, Integer followers) {
+            this.id = manga.path("id").asText();
+            this.title = manga.path("title").asText("");
+            this.status = manga.path("status").asText("");
+            this.year = manga.hasNonNull("year") ? manga.get("year").asInt() : null;
+            this.cover = manga.path("cover").asText("");
+            this.followers = followers != null ? followers : 0;
+
+            List<String> tagList = new ArrayList<>();
+            manga.path("tags").forEach(tag -> tagList.add(tag.asText()));
+            this.tags = tagList.toArray(new String[0]);
+
+            Set<String> termSet = new HashSet<>();
+            for (String text : titles) {
+                termSet.addAll(normalize(text));
+            }
+            termSet.addAll(normalize(title));
+            for (String tag : tags) {
+                termSet.addAll(normalize(tag));
+            }
+            termSet.addAll(normalize(status));
+            if (year != null) {
+                termSet.add(year.toString());
+            }
+            this.terms = termSet.toArray(new String[0]);
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public int getFollowers() {
+            return followers;
+        }
+
+        /**
+         * id, title, tags, status, year, cover and followers. Unlike a MangaDex search
+         * result there is no description, contentRating, createdAt, updatedAt, rating or
+         * comments; they are not kept, to keep the index small.
+         */
+        ObjectNode toJson(ObjectMapper mapper) {
+            ObjectNode node = mapper.createObjectNode();
+            node.put("id", id);
+            node.put("title", title);
+            ArrayNode tagArray = node.putArray("tags");
+            for (String tag : tags) {
+                tagArray.add(tag);
+            }
+            node.put("status", status);
+            if (year != null) {
+                node.put("year", year);
+            }
+            node.put("cover", cover);
+            node.put("followers", followers);
+            return node;
+        }
+    }
+
+    /**
+     * Index terms (positions in the sorted term array) matched by one query term, with
+     * their weights and the total length of their posting lists
+     */
+    private static class TermMatches {
+        final IntList terms = new IntList();
+        final IntList weights = new IntList();
+        long postingCount;
+
+        void add(int term, int weight, int postings) {
+            terms.add(term);
+            weights.add(weight);
+            postingCount += postings;
+        }
+    }
+
+    /**
+     * An immutable build of the index
+     */
+    private static class Snapshot {
+        final Document[] documents;
+        final String[] terms;
+        final int[][] postings;
+
+        Snapshot(Document[] documents, String[] terms, int[][] postings) {
+            this.documents = documents;
+            this.terms = terms;
+            this.postings = postings;
+        }
+    }
+
+    /**
+     * Scoring state for one query. Only touched documents are reset afterwards,
+     * so a query costs in proportion to its matches, not to the catalogue size.
+     */
+    private static class Scratch {
+        final int[] score;
+        final int[] matchedTerms;
+        final int[] termWeight;
+        final IntList touched = new IntList();
+
+        Scratch(int size) {
+            this.score = new int[size];
+            this.matchedTerms = new int[size];
+            this.termWeight = new int[size];
+        }
+
+        /**
+         * Credit the documents of one posting list to query term number termNumber,
+         * keeping only the best weight per document and term. Documents that missed
+         * an earlier term are skipped, since they cannot match the whole query.
+         */
+        void add(int[] docs, int termNumber, int weight) {
+            for (int doc : docs) {
+                int matched = matchedTerms[doc];
+                if (matched == termNumber - 1) {
+                    // First match of this term
+                    if (termNumber == 1) {
+                        touched.add(doc);
+                    }
+                    matchedTerms[doc] = termNumber;
+                    score[doc] += weight;
+                    termWeight[doc] = weight;
+                } else if (matched == termNumber && weight > termWeight[doc]) {
+                    score[doc] += weight - termWeight[doc];
+                    termWeight[doc] = weight;
+                }
+            }
+        }
+
+        void reset() {
+            for (int i = 0; i < touched.size; i++) {
+                int doc = touched.values[i];
+                score[doc] = 0;
+                matchedTerms[doc] = 0;
+                termWeight[doc] = 0;
+            }
+            touched.size = 0;
+        }
+    }
+
+    /**
+     * Growable int array
+     */
+    private static class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        boolean contains(int value) {
+            for (int i = 0; i < size; i++) {
+                if (values[i] == value) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
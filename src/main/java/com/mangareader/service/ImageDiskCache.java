@@ -0,0 +1,373 @@
+package com.mangareader.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Bounded, content-addressed on-disk cache for proxied images.
+ *
+ * Entries are keyed by the upstream identity of the image (chapter hash + quality + filename
+ * for pages, manga ID + filename for covers) and stored under the SHA-256 of that key.
+ * Writes go to a temporary file that is fsynced and atomically renamed into place, so a
+ * crash never leaves a truncated image behind. The total size is bounded and the least
+ * recently used entries are evicted first.
+ */
+@Component
+public class ImageDiskCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageDiskCache.class);
+    private static final String TEMP_MARKER = ".tmp-";
+    private static final long TOUCH_INTERVAL_MS = 60 * 1000;
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long maxBytes;
+
+    // LRU index (digest -> size in bytes), guarded by "this"
+    private final LinkedHashMap<String, Long> index = new LinkedHashMap<>(256, 0.75f, true);
+    private long currentBytes;
+
+    public ImageDiskCache(@Value("${app.image-cache.enabled:true}") boolean enabled,
+            @Value("${app.image-cache.directory:${java.io.tmpdir}/manga-image-cache}") String directory,
+            @Value("${app.image-cache.max-size-mb:512}") long maxSizeMb) {
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.maxBytes = maxSizeMb * 1024 * 1024;
+    }
+
+    /**
+     * Create the cache directory, remove half-written files left by a crash and
+     * rebuild the LRU index from what is already on disk (oldest first).
+     */
+    @PostConstruct
+    void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+
+        Files.createDirectories(directory);
+
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> stream = Files.walk(directory, 2)) {
+            stream.filter(Files::isRegularFile).forEach(files::add);
+        }
+
+        List<Object[]> entries = new ArrayList<>();
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            try {
+                if (name.contains(TEMP_MARKER)) {
+                    Files.deleteIfExists(file);
+                } else {
+                    entries.add(new Object[] { name, Files.size(file), Files.getLastModifiedTime(file) });
+                }
+            } catch (IOException e) {
+                logger.warn("Skipping unreadable cache file {}: {}", file, e.getMessage());
+            }
+        }
+        entries.sort(Comparator.comparing(entry -> (FileTime) entry[2]));
+
+        synchronized (this) {
+            for (Object[] entry : entries) {
+                index.put((String) entry[0], (Long) entry[1]);
+                currentBytes += (Long) entry[1];
+            }
+        }
+        evictIfNeeded();
+
+        logger.info("Image disk cache at {} loaded {} entries ({} bytes, limit {} bytes)",
+                directory, entries.size(), currentBytes, maxBytes);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Cache key for a chapter page
+     */
+    public static String pageKey(String hash, String quality, String filename) {
+        return "page/" + hash + "/" + quality + "/" + filename;
+    }
+
+    /**
+     * Cache key for a manga cover
+     */
+    public static String coverKey(String mangaId, String filename) {
+        return "cover/" + mangaId + "/" + filename;
+    }
+
+    /**
+     * Look up a cached image and open it for reading, or return null on a miss.
+     * The caller must close the returned image; until then it stays readable even
+     * if the entry is evicted, since eviction only unlinks the file.
+     */
+    public CachedImage get(String key) {
+        if (!enabled) {
+            return null;
+        }
+
+        String digest = digest(key);
+        Long size;
+        synchronized (this) {
+            size = index.get(digest);
+        }
+        if (size == null) {
+            return null;
+        }
+
+        Path path = pathFor(digest);
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            // Removed behind our back (e.g. tmp cleaner or eviction), forget about it
+            remove(digest);
+            return null;
+        } catch (IOException e) {
+            logger.warn("Failed to open image cache entry {}: {}", key, e.getMessage());
+            return null;
+        }
+
+        touch(path);
+        return new CachedImage(channel, size);
+    }
+
+    /**
+     * Start writing a new entry, or return null when the cache is disabled or
+     * the temporary file cannot be created. The entry becomes visible only once
+     * {@link Writer#commit()} succeeds.
+     */
+    public Writer openWriter(String key) {
+        if (!enabled) {
+            return null;
+        }
+
+        String digest = digest(key);
+        Path target = pathFor(digest);
+
+        try {
+            Files.createDirectories(target.getParent());
+            Path temp = target.resolveSibling(digest + TEMP_MARKER + UUID.randomUUID());
+            FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            return new Writer(key, digest, target, temp, channel);
+        } catch (IOException e) {
+            logger.warn("Failed to open image cache entry {}: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private void register(String digest, long size) {
+        synchronized (this) {
+            Long previous = index.put(digest, size);
+            currentBytes += size - (previous != null ? previous : 0);
+        }
+        evictIfNeeded();
+    }
+
+    /**
+     * Evict least recently used entries until the cache fits its size limit
+     */
+    private void evictIfNeeded() {
+        List<String> victims = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Map.Entry<String, Long>> it = index.entrySet().iterator();
+            while (currentBytes > maxBytes && it.hasNext()) {
+                Map.Entry<String, Long> eldest = it.next();
+                currentBytes -= eldest.getValue();
+                victims.add(eldest.getKey());
+                it.remove();
+            }
+        }
+
+        // Readers that already opened a victim keep reading it until they close it
+        for (String digest : victims) {
+            try {
+                Files.deleteIfExists(pathFor(digest));
+            } catch (IOException e) {
+                logger.warn("Failed to evict image cache entry {}: {}", digest, e.getMessage());
+            }
+        }
+    }
+
+    private synchronized void remove(String digest) {
+        Long size = index.remove(digest);
+        if (size != null) {
+            currentBytes -= size;
+        }
+    }
+
+    /**
+     * Refresh the modification time so LRU order survives restarts.
+     * Rate-limited to avoid a metadata write on every hit.
+     */
+    private void touch(Path path) {
+        try {
+            long now = System.currentTimeMillis();
+            if (now - Files.getLastModifiedTime(path).toMillis() > TOUCH_INTERVAL_MS) {
+                Files.setLastModifiedTime(path, FileTime.fromMillis(now));
+            }
+        } catch (IOException ignored) {
+            // Only affects eviction order after a restart
+        }
+    }
+
+    private Path pathFor(String digest) {
+        // Shard by the first two hex chars to keep directories small
+        return directory.resolve(digest.substring(0, 2)).resolve(digest);
+    }
+
+    private static String digest(String key) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(md.digest(key.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * An entry being written. Writes go to a temporary file that is fsynced and
+     * atomically renamed into place on commit; failures are logged and turn the
+     * writer into a no-op, since the cache is best-effort.
+     */
+    public class Writer {
+        private final String key;
+        private final String digest;
+        private final Path target;
+        private final Path temp;
+        private FileChannel channel;
+        private long written;
+
+        Writer(String key, String digest, Path target, Path temp, FileChannel channel) {
+            this.key = key;
+            this.digest = digest;
+            this.target = target;
+            this.temp = temp;
+            this.channel = channel;
+        }
+
+        /**
+         * Temporary file holding the bytes written so far
+         */
+        public Path getTempPath() {
+            return temp;
+        }
+
+        /**
+         * False once the writer has been committed or has given up after an error
+         */
+        public boolean isOpen() {
+            return channel != null;
+        }
+
+        public void write(byte[] bytes, int offset, int length) {
+            if (channel == null) {
+                return;
+            }
+
+            if (written + length > maxBytes) {
+                // Too large to ever fit, don't bother keeping it
+                abort();
+                return;
+            }
+
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                written += length;
+            } catch (IOException e) {
+                logger.warn("Failed to write image cache entry {}: {}", key, e.getMessage());
+                abort();
+            }
+        }
+
+        public void commit() {
+            if (channel == null) {
+                return;
+            }
+
+            try {
+                channel.force(true);
+                channel.close();
+                channel = null;
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                register(digest, written);
+            } catch (IOException e) {
+                logger.warn("Failed to commit image cache entry {}: {}", key, e.getMessage());
+                abort();
+            }
+        }
+
+        public void abort() {
+            try {
+                if (channel != null) {
+                    channel.close();
+                    channel = null;
+                }
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // Swept on next startup
+            }
+        }
+    }
+
+    /**
+     * A cache hit: an open file plus its size. Holding the channel pins the bytes
+     * for as long as the image is being served.
+     */
+    public static class CachedImage implements Closeable {
+        private final FileChannel channel;
+        private final long size;
+
+        CachedImage(FileChannel channel, long size) {
+            this.channel = channel;
+            this.size = size;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Copy a byte range of the file to the given stream using FileChannel.transferTo,
+         * so the contents never pass through a heap buffer sized to the image.
+         */
+        public void transferTo(long position, long count, OutputStream out) throws IOException {
+            WritableByteChannel target = Channels.newChannel(out);
+            long end = position + count;
+            while (position < end) {
+                long transferred = channel.transferTo(position, end - position, target);
+                if (transferred <= 0) {
+                    throw new IOException("Cached image truncated");
+                }
+                position += transferred;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
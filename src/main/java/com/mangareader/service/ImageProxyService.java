@@ -1,244 +1,376 @@
 package com.mangareader.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mangareader.client.UpstreamClient;
+import com.mangareader.client.UpstreamEndpoint;
+import com.mangareader.exception.UpstreamStatusException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
-import java.net.URI;
-import java.net.http.HttpClient;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.time.Duration;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 
 @Service
 public class ImageProxyService {
 
-    private final HttpClient httpClient;
-    private final ObjectMapper mapper;
+    private static final Logger logger = LoggerFactory.getLogger(ImageProxyService.class);
+
+    // MangaDex origin that serves every page, used when no healthy @Home node is available
+    private static final String UPLOADS_ORIGIN = "https://uploads.mangadex.org";
+
+    private final UpstreamClient upstreamClient;
+    private final ImageDiskCache diskCache;
+    private final PagePrefetcher pagePrefetcher;
+    private final AtHomeService atHomeService;
+    private final AtHomeNodeHealth nodeHealth;
+    private final AtHomeReporter reporter;
+
+    private final int maxAttempts;
+    private final long backoffMs;
+
+    // Downloads in flight, keyed by disk cache key, that concurrent requests can join
+    private final Map<String, SharedDownload> sharedDownloads = new ConcurrentHashMap<>();
+
+    public ImageProxyService(UpstreamClient upstreamClient, ImageDiskCache diskCache, PagePrefetcher pagePrefetcher,
+            AtHomeService atHomeService, AtHomeNodeHealth nodeHealth, AtHomeReporter reporter,
+            @Value("${app.at-home.retry.max-attempts:3}") int maxAttempts,
+            @Value("${app.at-home.retry.backoff-ms:200}") long backoffMs) {
+        this.upstreamClient = upstreamClient;
+        this.diskCache = diskCache;
+        this.pagePrefetcher = pagePrefetcher;
+        this.atHomeService = atHomeService;
+        this.nodeHealth = nodeHealth;
+        this.reporter = reporter;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffMs = backoffMs;
+    }
+
+    /**
+     * Look up a cover image in the disk cache, or return null on a miss.
+     * The caller must close the returned image.
+     */
+    public ImageDiskCache.CachedImage getCachedCover(String mangaId, String filename) {
+        return diskCache.get(ImageDiskCache.coverKey(mangaId, filename));
+    }
 
-    // Cache for At-Home server responses (chapterId -> AtHomeData)
-    private final Map<String, CachedAtHomeData> atHomeCache = new ConcurrentHashMap<>();
+    /**
+     * Open a streaming download of a cover image from MangaDex CDN.
+     * Full responses are stored in the disk cache as they are streamed; a non-null
+     * range is forwarded upstream as-is and its partial response is not cached.
+     */
+    public UpstreamImage openCoverImage(String mangaId, String filename, String range) throws IOException {
+        String coverUrl = String.format("https://uploads.mangadex.org/covers/%s/%s", mangaId, filename);
 
-    // Cache TTL: 3 minutes
-    private static final long CACHE_TTL_MS = 3 * 60 * 1000;
+        return openUpstream(ImageDiskCache.coverKey(mangaId, filename), range,
+                (upstreamRange, download) -> sendUpstream(coverUrl, upstreamRange, "cover", download));
+    }
 
-    public ImageProxyService(ObjectMapper mapper) {
-        this.mapper = mapper;
-        this.httpClient = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(10))
-                .followRedirects(HttpClient.Redirect.NORMAL)
-                .build();
+    /**
+     * Strong ETag for a cover. Cover filenames are unique per upload, so the
+     * manga ID and filename identify the bytes.
+     */
+    public String getCoverETag(String mangaId, String filename) {
+        return "\"c-" + mangaId + "-" + filename + "\"";
     }
 
     /**
-     * Fetch cover image from MangaDex CDN
+     * Strong ETag for a page image. Page files are content-addressed by the
+     * At-Home chapter hash and filename, so they never change under the same tag.
      */
-    public byte[] fetchCoverImage(String coverUrl) throws IOException {
-        try {
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(coverUrl))
-                    .header("Referer", "https://mangadex.org/")
-                    .header("User-Agent", "Java-Proxy/1.0")
-                    .header("Cache-Control", "no-cache")
-                    .timeout(Duration.ofSeconds(30))
-                    .GET()
-                    .build();
-
-            HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
-
-            if (response.statusCode() != 200) {
-                throw new IOException("Failed to fetch cover: HTTP " + response.statusCode());
-            }
+    public String getImageETag(String chapterId, String filename, boolean useDataSaver) throws IOException {
+        AtHomeData atHomeData = getValidatedAtHomeData(chapterId, filename, useDataSaver);
+        String quality = useDataSaver ? "data-saver" : "data";
 
-            return response.body();
+        return "\"p-" + atHomeData.hash + "-" + quality + "-" + filename + "\"";
+    }
 
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new IOException("Cover fetch interrupted", e);
+    /**
+     * Look up a page image in the disk cache, or return null on a miss.
+     * The caller must close the returned image.
+     */
+    public ImageDiskCache.CachedImage getCachedImage(String chapterId, String filename, boolean useDataSaver)
+            throws IOException {
+        if (!diskCache.isEnabled()) {
+            return null;
         }
+
+        AtHomeData atHomeData = getValidatedAtHomeData(chapterId, filename, useDataSaver);
+        String quality = useDataSaver ? "data-saver" : "data";
+
+        return diskCache.get(ImageDiskCache.pageKey(atHomeData.hash, quality, filename));
     }
 
     /**
-     * Fetch image bytes from MangaDex CDN
+     * Open a streaming download of a page image from MangaDex CDN.
+     * Full responses are stored in the disk cache as they are streamed; a non-null
+     * range is forwarded upstream as-is and its partial response is not cached.
      */
-    public byte[] fetchImage(String chapterId, String filename, boolean useDataSaver) throws IOException {
-        // Get At-Home server data (cached)
-        AtHomeData atHomeData = getAtHomeData(chapterId);
+    public UpstreamImage openImage(String chapterId, String filename, boolean useDataSaver, String range)
+            throws IOException {
+        AtHomeData atHomeData = getValidatedAtHomeData(chapterId, filename, useDataSaver);
 
-        if (atHomeData == null) {
-            throw new IOException("Failed to fetch At-Home server data for chapter: " + chapterId);
-        }
+        // Path of the image on any @Home node (or the uploads origin)
+        String quality = useDataSaver ? "data-saver" : "data";
+        String imagePath = String.format("/%s/%s/%s", quality, atHomeData.hash, filename);
 
-        // Verify filename exists in the data array
-        boolean filenameExists = false;
-        String[] targetArray = useDataSaver ? atHomeData.dataSaver : atHomeData.data;
+        return openUpstream(ImageDiskCache.pageKey(atHomeData.hash, quality, filename), range,
+                (upstreamRange, download) -> sendPageUpstream(chapterId, atHomeData.baseUrl, imagePath,
+                        upstreamRange, download));
+    }
 
-        if (targetArray != null) {
-            for (String file : targetArray) {
-                if (file.equals(filename)) {
-                    filenameExists = true;
-                    break;
-                }
-            }
+    /**
+     * Warm the next few pages after the given one into the disk cache in the
+     * background, so page turns are served from disk
+     */
+    public void prefetchFollowingPages(String chapterId, String filename, boolean useDataSaver) throws IOException {
+        if (!pagePrefetcher.isEnabled() || !diskCache.isEnabled()) {
+            return;
         }
 
-        if (!filenameExists) {
-            throw new IOException("Filename not found in chapter data: " + filename);
-        }
+        pagePrefetcher.touch(chapterId);
 
-        // Build image URL
+        AtHomeData atHomeData = getValidatedAtHomeData(chapterId, filename, useDataSaver);
         String quality = useDataSaver ? "data-saver" : "data";
-        String imageUrl = String.format("%s/%s/%s/%s",
-                atHomeData.baseUrl,
-                quality,
-                atHomeData.hash,
-                filename);
+        int position = atHomeData.getPosition(filename, useDataSaver);
 
-        // Fetch image with proper headers
-        try {
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(imageUrl))
-                    .header("Referer", "https://mangadex.org/")
-                    .header("User-Agent", "Java-Proxy/1.0")
-                    .header("Cache-Control", "no-cache")
-                    .timeout(Duration.ofSeconds(30))
-                    .GET()
-                    .build();
-
-            HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
-
-            if (response.statusCode() != 200) {
-                throw new IOException("Failed to fetch image: HTTP " + response.statusCode());
+        for (int i = 1; i <= pagePrefetcher.getPagesAhead(); i++) {
+            String next = atHomeData.getFilename(position + i, useDataSaver);
+            if (next == null) {
+                break;
             }
+            String key = ImageDiskCache.pageKey(atHomeData.hash, quality, next);
+            pagePrefetcher.schedule(chapterId, key, () -> warmImage(chapterId, next, useDataSaver));
+        }
+    }
 
-            return response.body();
+    /**
+     * Download a page into the disk cache unless it is already there
+     */
+    private void warmImage(String chapterId, String filename, boolean useDataSaver) {
+        try {
+            try (ImageDiskCache.CachedImage cached = getCachedImage(chapterId, filename, useDataSaver)) {
+                if (cached != null) {
+                    return;
+                }
+            }
 
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new IOException("Image fetch interrupted", e);
+            try (UpstreamImage image = openImage(chapterId, filename, useDataSaver, null)) {
+                image.transferTo(OutputStream.nullOutputStream());
+            }
+        } catch (IOException e) {
+            logger.debug("Prefetch of {} in chapter {} failed: {}", filename, chapterId, e.getMessage());
         }
     }
 
     /**
-     * Get At-Home server data with caching
+     * Open an upstream download, joining one already in flight for the same image
+     * if there is one. Range requests and requests made while the disk cache is
+     * disabled always go straight upstream.
      */
-    private AtHomeData getAtHomeData(String chapterId) throws IOException {
-        // Check cache
-        CachedAtHomeData cached = atHomeCache.get(chapterId);
-        if (cached != null && !cached.isExpired()) {
-            return cached.data;
+    private UpstreamImage openUpstream(String cacheKey, String range, UpstreamFetch fetch) throws IOException {
+        if (range != null || !diskCache.isEnabled()) {
+            return fetch.open(range, null);
         }
 
-        // Fetch fresh data
-        String atHomeUrl = "https://api.mangadex.org/at-home/server/" + chapterId;
-
-        try {
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(atHomeUrl))
-                    .header("User-Agent", "Java-Proxy/1.0")
-                    .header("Cache-Control", "no-cache")
-                    .timeout(Duration.ofSeconds(10))
-                    .GET()
-                    .build();
-
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-
-            if (response.statusCode() != 200) {
-                throw new IOException("At-Home server returned HTTP " + response.statusCode());
+        while (true) {
+            SharedDownload existing = sharedDownloads.get(cacheKey);
+            if (existing != null) {
+                UpstreamImage follower = existing.follow();
+                // null: that download just finished or can't be shared, fetch on our own
+                return follower != null ? follower : fetch.open(null, null);
             }
 
-            // Parse response
-            JsonNode root = mapper.readTree(response.body());
-            String baseUrl = root.path("baseUrl").asText();
-            JsonNode chapter = root.path("chapter");
-            String hash = chapter.path("hash").asText();
-
-            JsonNode dataNode = chapter.path("data");
-            JsonNode dataSaverNode = chapter.path("dataSaver");
+            SharedDownload download = new SharedDownload(cacheKey, sharedDownloads);
+            if (sharedDownloads.putIfAbsent(cacheKey, download) != null) {
+                // Another request became the leader first, follow it instead
+                continue;
+            }
 
-            if (baseUrl.isEmpty() || hash.isEmpty()) {
-                throw new IOException("Invalid At-Home response: missing baseUrl or hash");
+            try {
+                return fetch.open(null, download);
+            } catch (IOException e) {
+                download.openFailed(e);
+                throw e;
             }
+        }
+    }
 
-            String[] data = jsonArrayToStringArray(dataNode);
-            String[] dataSaver = jsonArrayToStringArray(dataSaverNode);
+    /**
+     * Fetch a page from the chapter's @Home node, failing over when the node misbehaves.
+     * Quarantined or failing nodes are replaced by a fresh At-Home assignment, or by the
+     * uploads origin if MangaDex keeps handing out a bad node. Attempts are bounded and
+     * spaced by a jittered exponential backoff. Outcomes are fed to the node health
+     * tracker and reported to the @Home network.
+     */
+    private UpstreamImage sendPageUpstream(String chapterId, String baseUrl, String imagePath, String range,
+            SharedDownload download) throws IOException {
+        IOException failure = null;
 
-            if (data == null || data.length == 0) {
-                throw new IOException("No page data found in At-Home response");
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            if (attempt > 0) {
+                backoff(attempt);
+            }
+            if (!isUploadsOrigin(baseUrl) && !nodeHealth.isHealthy(baseUrl)) {
+                baseUrl = replacementBaseUrl(chapterId, baseUrl);
             }
 
-            AtHomeData atHomeData = new AtHomeData(baseUrl, hash, data, dataSaver);
-
-            // Cache the result
-            atHomeCache.put(chapterId, new CachedAtHomeData(atHomeData));
+            String url = baseUrl + imagePath;
+            long start = System.currentTimeMillis();
+            try {
+                UpstreamImage image = sendUpstream(url, range, "image", download);
+                trackNode(image, baseUrl, url, start);
+                return image;
+            } catch (UpstreamStatusException e) {
+                if (!isNodeFailure(e.getStatusCode())) {
+                    // The node answered properly (e.g. 404), another node won't do better
+                    throw e;
+                }
+                failure = e;
+            } catch (IOException e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                failure = e;
+            }
 
-            // Clean up old cache entries
-            cleanCache();
+            logger.warn("Fetching {} failed (attempt {} of {}): {}", url, attempt + 1, maxAttempts,
+                    failure.getMessage());
+            if (!isUploadsOrigin(baseUrl)) {
+                nodeHealth.recordFailure(baseUrl);
+                reporter.report(url, false, false, 0, System.currentTimeMillis() - start);
+                baseUrl = replacementBaseUrl(chapterId, baseUrl);
+            }
+        }
 
-            return atHomeData;
+        throw failure;
+    }
 
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new IOException("At-Home fetch interrupted", e);
+    /**
+     * Pick another base URL for a chapter whose node failed: a refreshed At-Home
+     * assignment if it points to a healthy node, otherwise the uploads origin
+     */
+    private String replacementBaseUrl(String chapterId, String failedBaseUrl) {
+        try {
+            AtHomeData refreshed = atHomeService.refresh(chapterId, failedBaseUrl);
+            if (!refreshed.baseUrl.equals(failedBaseUrl) && nodeHealth.isHealthy(refreshed.baseUrl)) {
+                return refreshed.baseUrl;
+            }
+        } catch (IOException e) {
+            logger.warn("At-Home refresh for chapter {} failed: {}", chapterId, e.getMessage());
         }
+        return UPLOADS_ORIGIN;
     }
 
     /**
-     * Convert JSON array to String array
+     * Feed the node's latency to the health tracker and report the load once the
+     * body has been transferred
      */
-    private String[] jsonArrayToStringArray(JsonNode arrayNode) {
-        if (arrayNode == null || !arrayNode.isArray()) {
-            return new String[0];
+    private void trackNode(UpstreamImage image, String baseUrl, String url, long start) {
+        if (isUploadsOrigin(baseUrl)) {
+            return;
         }
 
-        String[] result = new String[arrayNode.size()];
-        for (int i = 0; i < arrayNode.size(); i++) {
-            result[i] = arrayNode.get(i).asText();
-        }
-        return result;
+        nodeHealth.recordSuccess(baseUrl, System.currentTimeMillis() - start);
+        image.onComplete((success, bytes) -> {
+            if (!success) {
+                nodeHealth.recordFailure(baseUrl);
+            }
+            reporter.report(url, success, image.isUpstreamCacheHit(), bytes, System.currentTimeMillis() - start);
+        });
+    }
+
+    /**
+     * Statuses that say the node is broken, overloaded or refusing us, rather than
+     * the image not existing
+     */
+    private static boolean isNodeFailure(int status) {
+        return status >= 500 || status == 403 || status == 408 || status == 429;
+    }
+
+    private static boolean isUploadsOrigin(String baseUrl) {
+        return UPLOADS_ORIGIN.equals(baseUrl);
     }
 
     /**
-     * Clean expired cache entries
+     * Sleep before a retry: exponential backoff with full jitter
      */
-    private void cleanCache() {
-        atHomeCache.entrySet().removeIf(entry -> entry.getValue().isExpired());
+    private void backoff(int attempt) throws IOException {
+        long delay = backoffMs << Math.min(attempt - 1, 10);
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(delay / 2, delay + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Image fetch interrupted", e);
+        }
     }
 
     /**
-     * At-Home server data
+     * Send the upstream request and return as soon as the response headers arrive,
+     * leaving the body to be streamed by the caller. When leading a shared download,
+     * the body is teed into a new disk cache entry for followers to read.
      */
-    private static class AtHomeData {
-        final String baseUrl;
-        final String hash;
-        final String[] data;
-        final String[] dataSaver;
+    private UpstreamImage sendUpstream(String url, String range, String kind, SharedDownload download)
+            throws IOException {
+        HttpRequest.Builder builder = upstreamClient.request(url, UpstreamEndpoint.IMAGE)
+                .header("Referer", "https://mangadex.org/")
+                .GET();
+        if (range != null) {
+            builder.header("Range", range);
+        }
+
+        HttpResponse<InputStream> response = upstreamClient.send(builder.build(), UpstreamEndpoint.IMAGE,
+                HttpResponse.BodyHandlers.ofInputStream());
+
+        int status = response.statusCode();
+        boolean rangeStatus = range != null && (status == 206 || status == 416);
+
+        if (status != 200 && !rangeStatus) {
+            // Release the connection without reading the error body
+            response.body().close();
+            throw new UpstreamStatusException("Failed to fetch " + kind + ": HTTP " + status, status);
+        }
 
-        AtHomeData(String baseUrl, String hash, String[] data, String[] dataSaver) {
-            this.baseUrl = baseUrl;
-            this.hash = hash;
-            this.data = data;
-            this.dataSaver = dataSaver;
+        if (download == null) {
+            return new UpstreamImage(status, response.headers(), response.body(), null);
         }
+
+        ImageDiskCache.Writer writer = diskCache.openWriter(download.getKey());
+        download.opened(response.headers(), writer);
+
+        return new UpstreamImage(status, response.headers(), response.body(), writer != null ? download : null);
     }
 
     /**
-     * Cached At-Home data with expiration
+     * Get At-Home server data for a chapter and verify the filename belongs to it
      */
-    private static class CachedAtHomeData {
-        final AtHomeData data;
-        final long timestamp;
+    private AtHomeData getValidatedAtHomeData(String chapterId, String filename, boolean useDataSaver)
+            throws IOException {
+        // Get At-Home server data (cached)
+        AtHomeData atHomeData = atHomeService.get(chapterId);
 
-        CachedAtHomeData(AtHomeData data) {
-            this.data = data;
-            this.timestamp = System.currentTimeMillis();
+        if (atHomeData == null) {
+            throw new IOException("Failed to fetch At-Home server data for chapter: " + chapterId);
         }
 
-        boolean isExpired() {
-            return System.currentTimeMillis() - timestamp > CACHE_TTL_MS;
+        // Verify filename exists in the chapter (indexed lookup)
+        if (atHomeData.getPosition(filename, useDataSaver) < 0) {
+            throw new IOException("Filename not found in chapter data: " + filename);
         }
+
+        return atHomeData;
+    }
+
+    /**
+     * Opens an upstream download, optionally for a range and as the leader of a shared download
+     */
+    private interface UpstreamFetch {
+        UpstreamImage open(String range, SharedDownload download) throws IOException;
     }
 }
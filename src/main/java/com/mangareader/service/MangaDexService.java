@@ -1,19 +1,30 @@
 package com.mangareader.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mangareader.client.UpstreamClient;
+import com.mangareader.client.UpstreamEndpoint;
+import com.mangareader.client.UpstreamPriority;
 import com.mangareader.dto.MangaItemDTO;
 import com.mangareader.dto.PopularMangaResponseDTO;
 import com.mangareader.dto.mangadex.MangaDexResponseDTO;
-import com.mangareader.dto.mangadex.MangaDexStatisticsDTO;
+import com.mangareader.dto.mangadex.MangaDexStatisticsDTO.MangaStatistics;
+import com.mangareader.util.MangaDexParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
-import org.springframework.web.reactive.function.client.WebClientResponseException;
-import reactor.core.publisher.Mono;
 
-import java.time.Duration;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 /**
@@ -24,88 +35,515 @@ public class MangaDexService {
 
     private static final Logger logger = LoggerFactory.getLogger(MangaDexService.class);
     private static final String MANGADEX_API_BASE = "https://api.mangadex.org";
-    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
 
-    private final WebClient webClient;
+    // MangaDex only serves list results with offset + limit up to this many
+    private static final int MAX_FEED_WINDOW = 10000;
+
+    private final UpstreamClient upstreamClient;
+    private final MangaDexParser parser;
+    private final ObjectMapper mapper;
+    private final ResponseCache responseCache;
+    private final PopularityIndex popularityIndex;
+    private final StatisticsCache statisticsCache;
+    private final CatalogueIndex catalogueIndex;
+    private final TitleSuggester titleSuggester;
+    private final MangaLookupBatcher mangaLookupBatcher;
 
     @Value("${app.proxy.base-url:}")
     private String proxyBaseUrl;
 
-    public MangaDexService(WebClient webClient) {
-        this.webClient = webClient;
+    // Time budget for the optional parts of a details response (statistics, latest chapter)
+    @Value("${app.details.enrichment-deadline-ms:3000}")
+    private long enrichmentDeadlineMs;
+
+    // Feed pages of chapters; 500 is the most MangaDex allows per request
+    @Value("${app.chapters.page-size:500}")
+    private int chapterPageSize;
+
+    // Feed pages requested at once after the first one
+    @Value("${app.chapters.max-concurrent-pages:3}")
+    private int maxConcurrentChapterPages;
+
+    public MangaDexService(UpstreamClient upstreamClient, MangaDexParser parser, ObjectMapper mapper,
+            ResponseCache responseCache, PopularityIndex popularityIndex, StatisticsCache statisticsCache,
+            CatalogueIndex catalogueIndex, TitleSuggester titleSuggester, MangaLookupBatcher mangaLookupBatcher) {
+        this.upstreamClient = upstreamClient;
+        this.parser = parser;
+        this.mapper = mapper;
+        this.responseCache = responseCache;
+        this.popularityIndex = popularityIndex;
+        this.statisticsCache = statisticsCache;
+        this.catalogueIndex = catalogueIndex;
+        this.titleSuggester = titleSuggester;
+        this.mangaLookupBatcher = mangaLookupBatcher;
     }
 
     /**
-     * Fetch popular manga from MangaDex API
+     * Search manga by title, with covers resolved from the same response and
+     * statistics from the statistics cache (cached; stale results if MangaDex fails)
+     */
+    public CompletableFuture<ResponseCache.Cached<ArrayNode>> searchManga(String query) {
+        return responseCache.getSearchResults(query, () -> fetchSearchResults(query));
+    }
+
+    /**
+     * Search manga by title in the local catalogue index, without going upstream.
+     * Falls back to {@link #searchManga(String)} until the first crawl has finished.
+     */
+    public CompletableFuture<ResponseCache.Cached<ArrayNode>> searchMangaLocally(String query) {
+        if (!catalogueIndex.isReady()) {
+            logger.debug("Catalogue index not built yet, searching MangaDex for '{}'", query);
+            return searchManga(query);
+        }
+        return CompletableFuture.completedFuture(ResponseCache.Cached.fresh(catalogueIndex.search(query)));
+    }
+
+    private CompletableFuture<ArrayNode> fetchSearchResults(String query) {
+        // Expand cover_art so covers come back in the same response
+        String url = MANGADEX_API_BASE + "/manga?title=" + URLEncoder.encode(query.trim(), StandardCharsets.UTF_8)
+                + "&includes[]=cover_art";
+        UpstreamPriority priority = UpstreamPriority.current();
+
+        return upstreamClient.getBytesAsync(url, UpstreamEndpoint.API).thenCompose(body -> {
+            ArrayNode results;
+            try {
+                results = parser.parseMangaSearchResults(body, proxyBaseUrl);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+
+            List<String> ids = new ArrayList<>();
+            for (JsonNode result : results) {
+                ids.add(result.path("id").asText());
+            }
+
+            // Statistics are optional here: one batched lookup for the uncached IDs, bounded by the deadline
+            CompletableFuture<Map<String, MangaStatistics>> statistics =
+                    priority.within(() -> statisticsCache.getAllAsync(ids, enrichmentDeadlineMs));
+            return statistics.thenApply(statsById -> {
+                for (JsonNode result : results) {
+                    applyStatistics((ObjectNode) result, statsById.get(result.path("id").asText()));
+                }
+                return results;
+            });
+        });
+    }
+
+    /**
+     * Title completions for a partially typed query, most followed first, from the
+     * crawled catalogue
      *
-     * @param limit  Number of results (default 20)
-     * @param offset Pagination offset (default 0)
-     * @param order  Sort order: "asc" or "desc" (default "desc")
-     * @param sortBy Sort field (default "followedCount")
-     * @return PopularMangaResponseDTO with total, limit, offset, and results
+     * @throws IllegalStateException if the first crawl has not finished yet
      */
-    public PopularMangaResponseDTO getPopularManga(Integer limit, Integer offset, String order, String sortBy) {
-        // Build the MangaDex API URL
-        String url = buildMangaDexUrl(limit, offset, order, sortBy);
+    public List<TitleSuggester.Suggestion> suggestTitles(String query, int limit) {
+        if (!titleSuggester.isReady()) {
+            throw new IllegalStateException("Suggestions are not available yet");
+        }
+        return titleSuggester.suggest(query, limit);
+    }
 
-        logger.info("Fetching manga from: {}", url);
+    /**
+     * Fetch manga details in a single round trip.
+     *
+     * The manga is requested with its cover expanded (includes[]=cover_art), batched
+     * with concurrent lookups by {@link MangaLookupBatcher}. Statistics (from the
+     * statistics cache, batched the same way) and the latest English chapter only
+     * need the manga ID, so they are requested at the same time and added if they arrive
+     * within the enrichment deadline; otherwise they are left out rather than delaying
+     * the response.
+     *
+     * Results, including "not found", are cached.
+     *
+     * @return simplified manga details, with a null value if the manga does not exist
+     */
+    public CompletableFuture<ResponseCache.Cached<ObjectNode>> getMangaDetails(String id) {
+        return responseCache.getDetails(id, () -> fetchMangaDetails(id));
+    }
+
+    private CompletableFuture<ObjectNode> fetchMangaDetails(String id) {
+        long deadline = System.currentTimeMillis() + enrichmentDeadlineMs;
+
+        CompletableFuture<ObjectNode> manga = mangaLookupBatcher.get(id);
+        CompletableFuture<Map<String, MangaStatistics>> statistics = statisticsCache.getAllAsync(List.of(id));
+        CompletableFuture<byte[]> latestChapter = upstreamClient.getBytesAsync(
+                MANGADEX_API_BASE + "/manga/" + id
+                        + "/feed?translatedLanguage[]=en&order[chapter]=desc&limit=1",
+                UpstreamEndpoint.API);
 
-        try {
-            // Fetch manga list from MangaDex
-            MangaDexResponseDTO mangaDexResponse = webClient.get()
-                    .uri(url)
-                    .retrieve()
-                    .bodyToMono(MangaDexResponseDTO.class)
-                    .timeout(REQUEST_TIMEOUT)
-                    .doOnError(WebClientResponseException.class, ex -> {
-                        logger.error("MangaDex API error: status={}, body={}",
-                                ex.getStatusCode(), ex.getResponseBodyAsString());
-                    })
-                    .onErrorResume(Exception.class, ex -> {
-                        logger.error("Error fetching manga from MangaDex: {}", ex.getMessage());
-                        return Mono.empty();
-                    })
-                    .block();
-
-            if (mangaDexResponse == null || mangaDexResponse.getData() == null) {
-                logger.warn("Empty response from MangaDex API for URL: {}", url);
-                return new PopularMangaResponseDTO(0, limit, offset, Collections.emptyList());
+        return manga.thenCompose(result -> {
+            if (result == null) {
+                return CompletableFuture.completedFuture(null);
             }
 
-            logger.info("Received {} manga from MangaDex", mangaDexResponse.getData().size());
+            CompletableFuture<Map<String, MangaStatistics>> stats =
+                    withinDeadline(statistics, deadline, "statistics", id);
+            CompletableFuture<byte[]> feed = withinDeadline(latestChapter, deadline, "latest chapter", id);
+            return stats.thenCombine(feed, (statsById, latestFeed) -> {
+                if (statsById != null) {
+                    applyStatistics(result, statsById.get(id));
+                }
+                if (latestFeed != null) {
+                    try {
+                        ArrayNode chapters = parser.parseChapterFeed(latestFeed).getChapters();
+                        if (chapters.size() > 0) {
+                            result.set("latestChapter", chapters.get(0));
+                        }
+                    } catch (IOException e) {
+                        logger.debug("Skipping latest chapter for manga {}: {}", id, e.getMessage());
+                    }
+                }
+                return result;
+            });
+        }).whenComplete((result, error) -> {
+            // Nothing left to enrich
+            if (result == null) {
+                statistics.cancel(true);
+                latestChapter.cancel(true);
+            }
+        });
+    }
 
-            // Extract manga IDs for statistics fetch
-            List<String> mangaIds = mangaDexResponse.getData().stream()
-                    .map(MangaDexResponseDTO.MangaDexMangaData::getId)
-                    .collect(Collectors.toList());
+    /**
+     * Simplified manga (cover, followers, rating) for many IDs at once, for library screens.
+     *
+     * Manga that are fresh in the cache, from a details response or an earlier batch,
+     * are served from it. The rest are looked up together by {@link MangaLookupBatcher},
+     * which sends them as concurrent bulk requests of up to 100 IDs, and cached. Statistics
+     * for all of them come from the statistics cache within the enrichment deadline.
+     * If a lookup fails, the last cached copy of the manga is served instead and the
+     * whole result is flagged stale; manga without one are listed under "failed". The
+     * result only fails if every manga failed.
+     *
+     * @return {"results": [...], "notFound": [...], "failed": [...]}, each in request order
+     */
+    public CompletableFuture<ResponseCache.Cached<ObjectNode>> getMangaBatch(List<String> ids) {
+        List<String> order = ids.stream().map(ResponseCache::normalizeId).distinct().collect(Collectors.toList());
+
+        Map<String, ObjectNode> cached = responseCache.peekManga(order);
+        List<String> misses = order.stream().filter(id -> !cached.containsKey(id)).collect(Collectors.toList());
+        Map<String, CompletableFuture<ObjectNode>> lookups = mangaLookupBatcher.getAll(misses);
+        CompletableFuture<Map<String, MangaStatistics>> statistics =
+                statisticsCache.getAllAsync(order, enrichmentDeadlineMs);
+
+        CompletableFuture<?>[] pending = lookups.values().stream()
+                .map(lookup -> lookup.handle((manga, error) -> null))
+                .toArray(CompletableFuture[]::new);
+
+        return CompletableFuture.allOf(pending).thenCombine(statistics, (ignored, statsById) -> {
+            ObjectNode response = mapper.createObjectNode();
+            ArrayNode results = response.putArray("results");
+            ArrayNode notFound = response.putArray("notFound");
+            ArrayNode failed = response.putArray("failed");
+            long oldestFallback = Long.MAX_VALUE;
+
+            for (String id : order) {
+                ObjectNode manga;
+                CompletableFuture<ObjectNode> lookup = lookups.get(id);
+                if (lookup == null) {
+                    manga = cached.get(id);
+                } else if (!lookup.isCompletedExceptionally()) {
+                    manga = lookup.join();
+                    responseCache.putManga(id, manga);
+                } else {
+                    ResponseCache.Cached<ObjectNode> fallback = responseCache.getMangaFallback(id);
+                    if (fallback == null) {
+                        failed.add(id);
+                        continue;
+                    }
+                    manga = fallback.getValue();
+                    oldestFallback = Math.min(oldestFallback, fallback.getFetchedAt());
+                }
 
-            // Fetch statistics (followers count) for all manga
-            Map<String, Integer> statisticsMap = fetchStatistics(mangaIds);
+                if (manga == null) {
+                    notFound.add(id);
+                    continue;
+                }
+                // Cached nodes are shared; the latest chapter is only kept up to date on details
+                ObjectNode result = manga.deepCopy();
+                result.remove("latestChapter");
+                applyStatistics(result, statsById.get(id));
+                results.add(result);
+            }
+
+            if (failed.size() > 0) {
+                Throwable cause = UpstreamClient.unwrap(
+                        lookups.get(failed.get(0).asText()).handle((manga, error) -> error).join());
+                // Nothing to show at all: report the upstream failure rather than an empty library
+                if (failed.size() == order.size()) {
+                    throw new CompletionException(cause);
+                }
+                logger.warn("Batch of {} manga: {} could not be looked up: {}", order.size(), failed.size(),
+                        cause.getMessage());
+            }
+            return oldestFallback == Long.MAX_VALUE
+                    ? ResponseCache.Cached.fresh(response)
+                    : new ResponseCache.Cached<>(response, true, oldestFallback);
+        });
+    }
 
-            // Parse manga data into DTOs
-            List<MangaItemDTO> results = mangaDexResponse.getData().stream()
-                    .map(mangaData -> parseMangaItem(mangaData, statisticsMap))
-                    .collect(Collectors.toList());
+    /**
+     * Add followers, rating and comment count to a manga object, where known
+     */
+    private static void applyStatistics(ObjectNode manga, MangaStatistics stats) {
+        if (stats == null) {
+            return;
+        }
+        if (stats.getFollows() != null) {
+            manga.put("followers", stats.getFollows());
+        }
+        if (stats.getRating() != null && stats.getRating().getBayesian() != null) {
+            manga.put("rating", stats.getRating().getBayesian());
+        }
+        if (stats.getComments() != null && stats.getComments().getRepliesCount() != null) {
+            manga.put("comments", stats.getComments().getRepliesCount());
+        }
+    }
 
-            // If sorting by followedCount, sort client-side since MangaDex doesn't support
-            // it in order[]
-            if ("followedCount".equals(sortBy)) {
-                results.sort((a, b) -> {
-                    Integer followersA = a.getFollowers() != null ? a.getFollowers() : 0;
-                    Integer followersB = b.getFollowers() != null ? b.getFollowers() : 0;
-                    return "desc".equals(order) ? followersB.compareTo(followersA) : followersA.compareTo(followersB);
-                });
+    /**
+     * Fetch every English chapter of a manga, in chapter order, handing each feed page
+     * to the consumer as soon as it and all pages before it have arrived.
+     *
+     * The first page is fetched alone to learn the total; the remaining offsets are
+     * then requested concurrently, at most app.chapters.max-concurrent-pages at a time.
+     * The consumer runs on whichever thread delivered the page.
+     *
+     * @return the total number of chapters MangaDex reported; fails if a page cannot be
+     *         fetched or the consumer fails
+     */
+    public CompletableFuture<Integer> getChapterFeed(String id, ChapterPageConsumer consumer) {
+        // Later pages are requested from the client's threads, at the caller's priority
+        UpstreamPriority priority = UpstreamPriority.current();
+
+        return fetchChapterPage(id, 0, priority).thenCompose(body -> {
+            int total;
+            try {
+                MangaDexParser.ChapterFeedPage first = parser.parseChapterFeed(body);
+                consumer.accept(first.getChapters());
+                total = first.getTotal();
+            } catch (IOException e) {
+                throw new CompletionException(e);
             }
 
-            // Build response
-            Integer total = mangaDexResponse.getTotal() != null ? mangaDexResponse.getTotal() : results.size();
+            if (total > MAX_FEED_WINDOW) {
+                // MangaDex rejects offset + limit beyond this window
+                logger.warn("Manga {} has {} chapters, only the first {} can be listed", id, total, MAX_FEED_WINDOW);
+            }
+            int end = Math.min(total, MAX_FEED_WINDOW);
 
-            return new PopularMangaResponseDTO(total, limit, offset, results);
+            List<Integer> offsets = new ArrayList<>();
+            for (int offset = chapterPageSize; offset < end; offset += chapterPageSize) {
+                offsets.add(offset);
+            }
+            return new FeedWindow(id, offsets, consumer, priority).start().thenApply(ignored -> total);
+        });
+    }
 
-        } catch (Exception e) {
-            logger.error("Unexpected error in getPopularManga: ", e);
-            throw new RuntimeException("Failed to fetch popular manga: " + e.getMessage(), e);
+    /**
+     * Complete chapter list from the cache ({"chapters": [...], "total": n, "complete": true}),
+     * or null if it has to be fetched. A stale list is returned while a fresh one is
+     * fetched in the background.
+     */
+    public ObjectNode getCachedChapters(String id) {
+        return responseCache.getChapters(id, () -> {
+            ArrayNode chapters = mapper.createArrayNode();
+            return getChapterFeed(id, chapters::addAll).thenApply(total -> buildChapterList(chapters, total));
+        });
+    }
+
+    /**
+     * Last complete chapter list cached for a manga however old, for when the feed
+     * cannot be fetched; null if there is none
+     */
+    public ResponseCache.Cached<ObjectNode> getFallbackChapters(String id) {
+        return responseCache.getChaptersFallback(id);
+    }
+
+    /**
+     * Store a complete chapter list that was just streamed to a client
+     */
+    public void cacheChapters(String id, ArrayNode chapters, int total) {
+        responseCache.putChapters(id, buildChapterList(chapters, total));
+    }
+
+    private ObjectNode buildChapterList(ArrayNode chapters, int total) {
+        ObjectNode result = mapper.createObjectNode();
+        result.set("chapters", chapters);
+        result.put("total", total);
+        result.put("complete", true);
+        return result;
+    }
+
+    private CompletableFuture<byte[]> fetchChapterPage(String id, int offset, UpstreamPriority priority) {
+        String url = String.format(
+                "%s/manga/%s/feed?translatedLanguage[]=en&order[chapter]=asc&limit=%d&offset=%d",
+                MANGADEX_API_BASE, id, Math.min(chapterPageSize, MAX_FEED_WINDOW - offset), offset);
+        return upstreamClient.getBytesAsync(url, UpstreamEndpoint.API, priority);
+    }
+
+    /**
+     * Receives chapter feed pages in order
+     */
+    public interface ChapterPageConsumer {
+        void accept(ArrayNode chapters) throws IOException;
+    }
+
+    /**
+     * Sliding window over the remaining feed pages: keeps up to N pages in flight and
+     * hands them to the consumer strictly in order
+     */
+    private class FeedWindow {
+        private final String id;
+        private final List<Integer> offsets;
+        private final ChapterPageConsumer consumer;
+        private final UpstreamPriority priority;
+        private final List<CompletableFuture<byte[]>> pages = new ArrayList<>();
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        FeedWindow(String id, List<Integer> offsets, ChapterPageConsumer consumer, UpstreamPriority priority) {
+            this.id = id;
+            this.offsets = offsets;
+            this.consumer = consumer;
+            this.priority = priority;
+        }
+
+        CompletableFuture<Void> start() {
+            // Drop pages still in flight if we stopped early
+            done.whenComplete((ignored, error) -> pages.forEach(page -> page.cancel(true)));
+            consume(0);
+            return done;
+        }
+
+        private void consume(int i) {
+            if (i == offsets.size()) {
+                done.complete(null);
+                return;
+            }
+            while (pages.size() < offsets.size() && pages.size() < i + maxConcurrentChapterPages) {
+                pages.add(fetchChapterPage(id, offsets.get(pages.size()), priority));
+            }
+
+            pages.get(i).whenComplete((body, error) -> {
+                if (error != null) {
+                    done.completeExceptionally(UpstreamClient.unwrap(error));
+                    return;
+                }
+                try {
+                    consumer.accept(parser.parseChapterFeed(body).getChapters());
+                } catch (IOException | RuntimeException e) {
+                    done.completeExceptionally(e);
+                    return;
+                }
+                consume(i + 1);
+            });
+        }
+    }
+
+    /**
+     * An optional enrichment, bounded by the shared deadline. Completes with null (and
+     * gives up on the request) if it failed or did not make it in time.
+     */
+    private <T> CompletableFuture<T> withinDeadline(CompletableFuture<T> future, long deadline, String what,
+            String id) {
+        long remaining = Math.max(0, deadline - System.currentTimeMillis());
+        return future.orTimeout(remaining, TimeUnit.MILLISECONDS).handle((value, error) -> {
+            if (error == null) {
+                return value;
+            }
+            Throwable cause = UpstreamClient.unwrap(error);
+            if (cause instanceof TimeoutException) {
+                logger.debug("Skipping {} for manga {}: deadline exceeded", what, id);
+            } else {
+                logger.debug("Skipping {} for manga {}: {}", what, id, cause.getMessage());
+            }
+            future.cancel(true);
+            return null;
+        });
+    }
+
+    /**
+     * Fetch popular manga from MangaDex API
+     *
+     * @param limit  Number of results (default 20)
+     * @param offset Pagination offset (default 0)
+     * @param order  Sort order: "asc" or "desc" (default "desc")
+     * @param sortBy Sort field (default "followedCount")
+     * @param cursor Opaque cursor from a previous page's nextCursor, or null
+     * @return PopularMangaResponseDTO with total, limit, offset, and results; fails with
+     *         IllegalArgumentException if the cursor is invalid. Upstream listings are
+     *         cached, and the last good page is served stale if MangaDex fails.
+     */
+    public CompletableFuture<ResponseCache.Cached<PopularMangaResponseDTO>> getPopularManga(Integer limit,
+            Integer offset, String order, String sortBy, String cursor) {
+        // Followers ranking is answered from the crawled index once it is built
+        if ("followedCount".equals(sortBy) && popularityIndex.isReady()) {
+            try {
+                return CompletableFuture.completedFuture(ResponseCache.Cached.fresh(
+                        popularityIndex.page(limit, offset, cursor, "asc".equals(order))));
+            } catch (IllegalArgumentException e) {
+                return CompletableFuture.failedFuture(e);
+            }
         }
+
+        // Build the MangaDex API URL
+        String url = buildMangaDexUrl(limit, offset, order, sortBy);
+        return responseCache.getPopular(url, () -> fetchPopularManga(url, limit, offset, order, sortBy));
+    }
+
+    private CompletableFuture<PopularMangaResponseDTO> fetchPopularManga(String url, Integer limit, Integer offset,
+            String order, String sortBy) {
+        logger.info("Fetching manga from: {}", url);
+        UpstreamPriority priority = UpstreamPriority.current();
+
+        // Fetch manga list from MangaDex
+        return upstreamClient.getBytesAsync(url, UpstreamEndpoint.API)
+                .thenApply(body -> {
+                    try {
+                        return mapper.readValue(body, MangaDexResponseDTO.class);
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                })
+                .thenCompose(mangaDexResponse -> {
+                    if (mangaDexResponse == null || mangaDexResponse.getData() == null) {
+                        logger.warn("Empty response from MangaDex API for URL: {}", url);
+                        return CompletableFuture.completedFuture(
+                                new PopularMangaResponseDTO(0, limit, offset, Collections.emptyList()));
+                    }
+
+                    logger.info("Received {} manga from MangaDex", mangaDexResponse.getData().size());
+
+                    // Extract manga IDs for statistics fetch
+                    List<String> mangaIds = mangaDexResponse.getData().stream()
+                            .map(MangaDexResponseDTO.MangaDexMangaData::getId)
+                            .collect(Collectors.toList());
+
+                    // Fetch statistics (followers count) for all manga
+                    return priority.within(() -> statisticsCache.getAllAsync(mangaIds)).thenApply(statistics -> {
+                        Map<String, Integer> statisticsMap = toFollowers(statistics);
+
+                        // Parse manga data into DTOs
+                        List<MangaItemDTO> results = mangaDexResponse.getData().stream()
+                                .map(mangaData -> parseMangaItem(mangaData, statisticsMap))
+                                .collect(Collectors.toList());
+
+                        // If sorting by followedCount, sort client-side since MangaDex doesn't support
+                        // it in order[]
+                        if ("followedCount".equals(sortBy)) {
+                            results.sort((a, b) -> {
+                                Integer followersA = a.getFollowers() != null ? a.getFollowers() : 0;
+                                Integer followersB = b.getFollowers() != null ? b.getFollowers() : 0;
+                                return "desc".equals(order) ? followersB.compareTo(followersA)
+                                        : followersA.compareTo(followersB);
+                            });
+                        }
+
+                        // Build response
+                        Integer total = mangaDexResponse.getTotal() != null ? mangaDexResponse.getTotal()
+                                : results.size();
+
+                        return new PopularMangaResponseDTO(total, limit, offset, results);
+                    });
+                });
     }
 
     /**
@@ -131,50 +569,27 @@ public class MangaDexService {
     }
 
     /**
-     * Fetch statistics (followers) for multiple manga IDs
+     * Followers for multiple manga IDs during a catalogue crawl; what is fetched is
+     * not added to the statistics cache
      */
-    private Map<String, Integer> fetchStatistics(List<String> mangaIds) {
-        if (mangaIds.isEmpty()) {
-            return Collections.emptyMap();
-        }
+    Map<String, Integer> fetchStatistics(List<String> mangaIds) {
+        return toFollowers(statisticsCache.getAllUncached(mangaIds));
+    }
 
-        try {
-            // Build statistics URL with manga IDs
-            String statsUrl = MANGADEX_API_BASE + "/statistics/manga?manga[]="
-                    + String.join("&manga[]=", mangaIds);
-
-            MangaDexStatisticsDTO statsResponse = webClient.get()
-                    .uri(statsUrl)
-                    .retrieve()
-                    .bodyToMono(MangaDexStatisticsDTO.class)
-                    .timeout(REQUEST_TIMEOUT)
-                    .onErrorResume(Exception.class, ex -> {
-                        logger.warn("Failed to fetch statistics: {}", ex.getMessage());
-                        return Mono.empty();
-                    })
-                    .block();
-
-            if (statsResponse != null && statsResponse.getStatistics() != null) {
-                Map<String, Integer> result = new HashMap<>();
-                statsResponse.getStatistics().forEach((mangaId, stats) -> {
-                    if (stats != null && stats.getFollows() != null) {
-                        result.put(mangaId, stats.getFollows());
-                    }
-                });
-                return result;
+    private static Map<String, Integer> toFollowers(Map<String, MangaStatistics> statistics) {
+        Map<String, Integer> result = new HashMap<>();
+        statistics.forEach((mangaId, stats) -> {
+            if (stats.getFollows() != null) {
+                result.put(mangaId, stats.getFollows());
             }
-
-        } catch (Exception e) {
-            logger.warn("Error fetching manga statistics: {}", e.getMessage());
-        }
-
-        return Collections.emptyMap();
+        });
+        return result;
     }
 
     /**
      * Parse a MangaDex manga data object into a simplified DTO
      */
-    private MangaItemDTO parseMangaItem(MangaDexResponseDTO.MangaDexMangaData mangaData,
+    MangaItemDTO parseMangaItem(MangaDexResponseDTO.MangaDexMangaData mangaData,
             Map<String, Integer> statisticsMap) {
         String id = mangaData.getId();
         String title = extractTitle(mangaData.getAttributes());
@@ -0,0 +1,199 @@
+package com.mangareader.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mangareader.client.UpstreamClient;
+import com.mangareader.client.UpstreamEndpoint;
+import com.mangareader.exception.UpstreamStatusException;
+import com.mangareader.util.MangaDexParser;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Looks up manga by ID through bulk /manga?ids[]= requests.
+ *
+ * Lookups made within app.manga-batch.window-ms of each other are sent together, up
+ * to 100 IDs per request, and concurrent lookups of the same ID share one entry in the
+ * batch. Every caller gets its own copy of the simplified manga (cover included), or
+ * null if MangaDex does not know the ID. IDs that are not UUIDs would make MangaDex
+ * reject the whole batch, so they are requested on their own.
+ */
+@Component
+public class MangaLookupBatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(MangaLookupBatcher.class);
+    private static final String MANGADEX_API_BASE = "https://api.mangadex.org";
+
+    // Largest page MangaDex serves for /manga
+    private static final int MAX_BATCH_SIZE = 100;
+
+    private static final Pattern UUID = Pattern.compile(
+            "[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}");
+
+    private final UpstreamClient upstreamClient;
+    private final MangaDexParser parser;
+    private final String proxyBaseUrl;
+
+    // Normalized ID -> lookup queued or in flight, shared by concurrent callers
+    private final Map<String, CompletableFuture<ObjectNode>> inFlight = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final MicroBatcher<String> batcher;
+
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    public MangaLookupBatcher(UpstreamClient upstreamClient, MangaDexParser parser,
+            @Value("${app.proxy.base-url:}") String proxyBaseUrl,
+            @Value("${app.manga-batch.window-ms:5}") long windowMs) {
+        this.upstreamClient = upstreamClient;
+        this.parser = parser;
+        this.proxyBaseUrl = proxyBaseUrl;
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "manga-lookup-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.batcher = new MicroBatcher<>(windowMs, MAX_BATCH_SIZE, this::fetchBatch, scheduler);
+    }
+
+    /**
+     * Simplified manga for an ID, or null if it does not exist
+     */
+    public CompletableFuture<ObjectNode> get(String id) {
+        return getAll(List.of(id)).get(ResponseCache.normalizeId(id));
+    }
+
+    /**
+     * Look up several manga at once; they are batched together with each other and
+     * with concurrent lookups. Each future completes with the manga, or null if it
+     * does not exist, and fails if its batch could not be fetched.
+     *
+     * @return one future per distinct normalized ID
+     */
+    public Map<String, CompletableFuture<ObjectNode>> getAll(Collection<String> ids) {
+        Map<String, CompletableFuture<ObjectNode>> result = new LinkedHashMap<>();
+        List<String> toFetch = new ArrayList<>();
+
+        for (String rawId : ids) {
+            String id = ResponseCache.normalizeId(rawId);
+            if (result.containsKey(id)) {
+                continue;
+            }
+            lookups.incrementAndGet();
+
+            CompletableFuture<ObjectNode> lookup;
+            if (!UUID.matcher(id).matches()) {
+                lookup = fetchOne(id);
+            } else {
+                CompletableFuture<ObjectNode> created = new CompletableFuture<>();
+                CompletableFuture<ObjectNode> existing = inFlight.putIfAbsent(id, created);
+                if (existing != null) {
+                    lookup = existing;
+                } else {
+                    lookup = created;
+                    toFetch.add(id);
+                }
+            }
+            // The shared node stays untouched; callers add statistics to their copy
+            result.put(id, lookup.thenApply(manga -> manga != null ? manga.deepCopy() : null));
+        }
+
+        batcher.addAll(toFetch);
+        return result;
+    }
+
+    /**
+     * Request one batch of IDs and complete their futures
+     */
+    private void fetchBatch(List<String> ids) {
+        List<String> batch = new ArrayList<>(ids);
+        String url = MANGADEX_API_BASE + "/manga?limit=" + batch.size()
+                + "&includes[]=cover_art&contentRating[]=safe&contentRating[]=suggestive"
+                + "&contentRating[]=erotica&contentRating[]=pornographic&ids[]=" + String.join("&ids[]=", batch);
+        batches.incrementAndGet();
+
+        upstreamClient.getBytesAsync(url, UpstreamEndpoint.API)
+                .thenApply(body -> {
+                    try {
+                        return byId(parser.parseMangaSearchResults(body, proxyBaseUrl));
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                })
+                .whenComplete((found, error) -> {
+                    if (error != null) {
+                        logger.warn("Error fetching {} manga by ID: {}", batch.size(),
+                                UpstreamClient.unwrap(error).getMessage());
+                    }
+                    for (String id : batch) {
+                        CompletableFuture<ObjectNode> future = inFlight.remove(id);
+                        if (future == null) {
+                            continue;
+                        }
+                        if (error != null) {
+                            future.completeExceptionally(UpstreamClient.unwrap(error));
+                        } else {
+                            future.complete(found.get(id));
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Request a single manga; a 404 means it does not exist
+     */
+    private CompletableFuture<ObjectNode> fetchOne(String id) {
+        return upstreamClient.getBytesAsync(MANGADEX_API_BASE + "/manga/" + id + "?includes[]=cover_art",
+                        UpstreamEndpoint.API)
+                .handle((body, error) -> {
+                    if (error != null) {
+                        Throwable cause = UpstreamClient.unwrap(error);
+                        if (cause instanceof UpstreamStatusException
+                                && ((UpstreamStatusException) cause).getStatusCode() == 404) {
+                            return null;
+                        }
+                        throw new CompletionException(cause);
+                    }
+                    try {
+                        return parser.parseMangaDetail(body, proxyBaseUrl);
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                });
+    }
+
+    private static Map<String, ObjectNode> byId(ArrayNode mangaList) {
+        Map<String, ObjectNode> result = new HashMap<>();
+        for (JsonNode manga : mangaList) {
+            result.put(ResponseCache.normalizeId(manga.path("id").asText()), (ObjectNode) manga);
+        }
+        return result;
+    }
+
+    /**
+     * Lookup and upstream batch counters, for status pages
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("lookups", lookups.get());
+        result.put("batches", batches.get());
+        result.put("inFlight", inFlight.size());
+        return result;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,130 @@
+package com.mangareader.service;
+
+import com.mangareader.client.UpstreamPriority;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Collects keys submitted by concurrent requests and hands them to a flush function
+ * in batches: a batch goes out once it is full, or a short window after its first key
+ * arrived. Full batches are flushed on the submitting thread, the rest on the scheduler.
+ *
+ * Each batch remembers the most urgent {@link UpstreamPriority} of the callers whose
+ * keys it holds, and the flush function runs under that priority on whichever thread
+ * sends it. A background refresh therefore stays background work, and a reader whose
+ * keys share its batch is not held back by it.
+ */
+class MicroBatcher<K> {
+
+    private final long windowNanos;
+    private final int maxSize;
+    private final Consumer<List<K>> flush;
+    private final ScheduledExecutorService scheduler;
+
+    private List<K> pending = new ArrayList<>();
+    private UpstreamPriority pendingPriority;
+    private ScheduledFuture<?> scheduled;
+
+    /**
+     * @param windowMs  how long a batch waits for more keys; 0 flushes every submission at once
+     * @param maxSize   largest batch handed to the flush function
+     * @param flush     sends one batch; must not throw
+     * @param scheduler runs flushes when the window closes
+     */
+    MicroBatcher(long windowMs, int maxSize, Consumer<List<K>> flush, ScheduledExecutorService scheduler) {
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+        this.maxSize = Math.max(1, maxSize);
+        this.flush = flush;
+        this.scheduler = scheduler;
+    }
+
+    void addAll(Collection<K> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        UpstreamPriority priority = UpstreamPriority.current();
+        if (windowNanos <= 0) {
+            flushNow(new ArrayList<>(keys), priority);
+            return;
+        }
+
+        List<Batch<K>> full = new ArrayList<>();
+        synchronized (this) {
+            for (K key : keys) {
+                pending.add(key);
+                pendingPriority = UpstreamPriority.highest(pendingPriority, priority);
+                if (pending.size() >= maxSize) {
+                    full.add(takePending());
+                }
+            }
+
+            if (pending.isEmpty() && scheduled != null) {
+                scheduled.cancel(false);
+                scheduled = null;
+            } else if (!pending.isEmpty() && scheduled == null) {
+                try {
+                    scheduled = scheduler.schedule(this::flushPending, windowNanos, TimeUnit.NANOSECONDS);
+                } catch (RejectedExecutionException e) {
+                    // Shutting down; send what is pending now
+                    full.add(takePending());
+                }
+            }
+        }
+
+        for (Batch<K> batch : full) {
+            send(batch);
+        }
+    }
+
+    private void flushPending() {
+        Batch<K> batch;
+        synchronized (this) {
+            batch = takePending();
+            scheduled = null;
+        }
+        if (!batch.keys.isEmpty()) {
+            send(batch);
+        }
+    }
+
+    private Batch<K> takePending() {
+        Batch<K> batch = new Batch<>(pending, pendingPriority);
+        pending = new ArrayList<>();
+        pendingPriority = null;
+        return batch;
+    }
+
+    private void flushNow(List<K> keys, UpstreamPriority priority) {
+        for (int from = 0; from < keys.size(); from += maxSize) {
+            send(new Batch<>(keys.subList(from, Math.min(keys.size(), from + maxSize)), priority));
+        }
+    }
+
+    private void send(Batch<K> batch) {
+        UpstreamPriority priority = batch.priority != null ? batch.priority : UpstreamPriority.INTERACTIVE;
+        priority.within(() -> {
+            flush.accept(batch.keys);
+            return null;
+        });
+    }
+
+    /**
+     * Keys flushed together and the most urgent priority among their callers
+     */
+    private static class Batch<K> {
+        final List<K> keys;
+        final UpstreamPriority priority;
+
+        Batch(List<K> keys, UpstreamPriority priority) {
+            this.keys = keys;
+            this.priority = priority;
+        }
+    }
+}
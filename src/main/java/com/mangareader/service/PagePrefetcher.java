@@ -0,0 +1,165 @@
+package com.mangareader.service;
+
+import com.mangareader.client.UpstreamPriority;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Background executor for read-ahead of chapter pages.
+ *
+ * Work runs on a small dedicated pool with a bounded queue, so it never competes
+ * with request threads and is simply dropped when the pool is saturated. Each
+ * task belongs to a chapter; once a chapter has not been read for a while, its
+ * queued tasks are cancelled and skipped.
+ */
+@Component
+public class PagePrefetcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(PagePrefetcher.class);
+
+    private final boolean enabled;
+    private final int pagesAhead;
+    private final long abandonAfterMs;
+
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService sweeper;
+
+    // chapterId -> read-ahead state for that chapter
+    private final Map<String, ChapterState> chapters = new ConcurrentHashMap<>();
+
+    // Keys of tasks queued or running, to avoid warming the same page twice
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    public PagePrefetcher(@Value("${app.prefetch.enabled:true}") boolean enabled,
+            @Value("${app.prefetch.pages-ahead:3}") int pagesAhead,
+            @Value("${app.prefetch.threads:2}") int threads,
+            @Value("${app.prefetch.queue-size:64}") int queueSize,
+            @Value("${app.prefetch.abandon-after-seconds:60}") long abandonAfterSeconds) {
+        this.enabled = enabled && pagesAhead > 0;
+        this.pagesAhead = pagesAhead;
+        this.abandonAfterMs = abandonAfterSeconds * 1000;
+
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), daemonThreads("page-prefetch"),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(daemonThreads("page-prefetch-sweeper"));
+        long sweepMs = Math.max(1000, abandonAfterMs / 2);
+        this.sweeper.scheduleWithFixedDelay(this::cancelAbandonedChapters, sweepMs, sweepMs, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Number of pages to warm after the one being read
+     */
+    public int getPagesAhead() {
+        return pagesAhead;
+    }
+
+    /**
+     * Record that a chapter is being read, keeping its queued work alive
+     */
+    public void touch(String chapterId) {
+        if (enabled) {
+            chapters.computeIfAbsent(chapterId, id -> new ChapterState()).lastAccess = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Queue a warm-up task for a page of a chapter. Duplicate keys are ignored
+     * and the task is dropped if the queue is full.
+     */
+    public void schedule(String chapterId, String key, Runnable task) {
+        if (!enabled || !inFlight.add(key)) {
+            return;
+        }
+
+        ChapterState state = chapters.computeIfAbsent(chapterId, id -> new ChapterState());
+        state.lastAccess = System.currentTimeMillis();
+
+        FutureTask<Void> future = new FutureTask<>(() -> {
+            try {
+                if (!isAbandoned(state)) {
+                    task.run();
+                }
+            } finally {
+                inFlight.remove(key);
+            }
+        }, null) {
+            @Override
+            protected void done() {
+                state.pending.remove(this);
+                if (isCancelled()) {
+                    inFlight.remove(key);
+                }
+            }
+        };
+
+        state.pending.add(future);
+        try {
+            executor.execute(future);
+        } catch (RejectedExecutionException e) {
+            logger.debug("Prefetch queue full, dropping {}", key);
+            future.cancel(false);
+        }
+    }
+
+    /**
+     * Cancel queued work for chapters nobody has read recently and forget them
+     */
+    private void cancelAbandonedChapters() {
+        chapters.entrySet().removeIf(entry -> {
+            ChapterState state = entry.getValue();
+            if (!isAbandoned(state)) {
+                return false;
+            }
+
+            for (Future<?> future : state.pending) {
+                future.cancel(false);
+            }
+            executor.purge();
+            return true;
+        });
+    }
+
+    private boolean isAbandoned(ChapterState state) {
+        return System.currentTimeMillis() - state.lastAccess > abandonAfterMs;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        sweeper.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(() -> UpstreamPriority.runInBackground(runnable),
+                    prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        };
+    }
+
+    /**
+     * Per-chapter read-ahead state
+     */
+    private static class ChapterState {
+        volatile long lastAccess = System.currentTimeMillis();
+        final Set<Future<?>> pending = ConcurrentHashMap.newKeySet();
+    }
+}
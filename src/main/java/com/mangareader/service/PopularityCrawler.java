@@ -0,0 +1,222 @@
+package com.mangareader.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mangareader.client.UpstreamClient;
+import com.mangareader.client.UpstreamEndpoint;
+import com.mangareader.client.UpstreamPriority;
+import com.mangareader.dto.MangaItemDTO;
+import com.mangareader.util.MangaDexParser;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically walks the whole MangaDex catalogue and rebuilds the {@link PopularityIndex},
+ * the {@link CatalogueIndex} used for local search and the {@link TitleSuggester}.
+ *
+ * MangaDex only pages list results up to offset + limit = 10000, so the crawl orders by
+ * creation date and moves a createdAtSince cursor forward instead of paging deeper. Followers
+ * come from batched /statistics/manga calls, one per page, that bypass the {@link StatisticsCache}
+ * so the crawl does not evict the entries live requests use. A failed crawl keeps the previous
+ * ranking.
+ */
+@Component
+public class PopularityCrawler {
+
+    private static final Logger logger = LoggerFactory.getLogger(PopularityCrawler.class);
+    private static final String MANGADEX_API_BASE = "https://api.mangadex.org";
+
+    // Largest page MangaDex serves for /manga
+    private static final int PAGE_SIZE = 100;
+
+    // MangaDex only serves list results with offset + limit up to this many
+    private static final int MAX_LIST_WINDOW = 10000;
+
+    // How soon to try again when there is no ranking to fall back on
+    private static final long RETRY_WITHOUT_RANKING_SECONDS = 300;
+
+    private final UpstreamClient upstreamClient;
+    private final MangaDexService mangaDexService;
+    private final PopularityIndex index;
+    private final CatalogueIndex catalogueIndex;
+    private final TitleSuggester titleSuggester;
+    private final MangaDexParser parser;
+    private final boolean enabled;
+    private final long intervalSeconds;
+    private final long crawlDelayMs;
+    private final int maxManga;
+    private final String proxyBaseUrl;
+
+    private final ScheduledExecutorService scheduler;
+
+    public PopularityCrawler(UpstreamClient upstreamClient, MangaDexService mangaDexService, PopularityIndex index,
+            CatalogueIndex catalogueIndex, TitleSuggester titleSuggester, MangaDexParser parser,
+            @Value("${app.proxy.base-url:}") String proxyBaseUrl,
+            @Value("${app.popular.crawler.enabled:true}") boolean enabled,
+            @Value("${app.popular.crawler.interval-hours:6}") long intervalHours,
+            @Value("${app.popular.crawler.initial-delay-seconds:10}") long initialDelaySeconds,
+            @Value("${app.popular.crawler.crawl-delay-ms:250}") long crawlDelayMs,
+            @Value("${app.popular.crawler.max-manga:100000}") int maxManga) {
+        this.upstreamClient = upstreamClient;
+        this.mangaDexService = mangaDexService;
+        this.index = index;
+        this.catalogueIndex = catalogueIndex;
+        this.titleSuggester = titleSuggester;
+        this.parser = parser;
+        this.proxyBaseUrl = proxyBaseUrl;
+        this.enabled = enabled;
+        this.intervalSeconds = intervalHours * 3600;
+        this.crawlDelayMs = crawlDelayMs;
+        this.maxManga = maxManga;
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(() -> UpstreamPriority.runInBackground(runnable), "popularity-crawler");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        if (enabled) {
+            scheduler.schedule(this::run, initialDelaySeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    private void run() {
+        try {
+            crawl();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (Exception e) {
+            logger.warn("Popularity crawl failed, keeping previous ranking: {}", e.getMessage());
+        }
+
+        long delay = index.isReady() ? intervalSeconds : Math.min(intervalSeconds, RETRY_WITHOUT_RANKING_SECONDS);
+        if (!scheduler.isShutdown()) {
+            scheduler.schedule(this::run, delay, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Crawl the catalogue in creation order and publish the new ranking and search index
+     */
+    private void crawl() throws Exception {
+        long started = System.currentTimeMillis();
+        PopularityIndex.Crawl items = index.newCrawl();
+        List<CatalogueIndex.Document> documents = new ArrayList<>();
+        List<TitleSuggester.Entry> suggestions = new ArrayList<>();
+
+        String since = null;
+        int offset = 0;
+        int requests = 0;
+
+        while (items.size() < maxManga) {
+            String url = buildCrawlUrl(since, offset);
+            JsonNode data = upstreamClient.getJson(url, UpstreamEndpoint.API).path("data");
+            requests++;
+
+            if (data.isEmpty()) {
+                break;
+            }
+
+            List<String> ids = new ArrayList<>(data.size());
+            data.forEach(mangaData -> ids.add(mangaData.path("id").asText()));
+            Map<String, Integer> statistics = mangaDexService.fetchStatistics(ids);
+
+            // Each manga is read once from the page's tree into everything the crawl keeps
+            for (JsonNode mangaData : data) {
+                ObjectNode manga = parser.parseMangaDetail(mangaData, proxyBaseUrl);
+                String id = manga.path("id").asText();
+                Integer followers = statistics.get(id);
+                if (!items.add(toItem(manga, followers))) {
+                    continue;
+                }
+
+                List<String> titles = parser.getAllTitles(mangaData);
+                documents.add(new CatalogueIndex.Document(manga, titles, followers));
+                suggestions.add(new TitleSuggester.Entry(id, manga.path("title").asText(""), titles, followers));
+            }
+
+            if (data.size() < PAGE_SIZE) {
+                break;
+            }
+
+            // Seconds precision is all createdAtSince accepts; items sharing the last
+            // timestamp come back again and are skipped by ID
+            String last = createdAtOf(data.get(data.size() - 1));
+            if (last == null || last.equals(since)) {
+                offset += PAGE_SIZE;
+                if (offset + PAGE_SIZE > MAX_LIST_WINDOW) {
+                    logger.warn("Popularity crawl stuck at createdAt {}, stopping early", since);
+                    break;
+                }
+            } else {
+                since = last;
+                offset = 0;
+            }
+
+            Thread.sleep(crawlDelayMs);
+        }
+
+        index.replace(items.values());
+        catalogueIndex.replace(documents);
+        titleSuggester.replace(suggestions);
+        logger.info("Popularity ranking, catalogue index and suggestions rebuilt with {} manga ({} terms, {} titles) "
+                + "from {} requests in {} ms", items.size(), catalogueIndex.termCount(), titleSuggester.keyCount(),
+                requests, System.currentTimeMillis() - started);
+    }
+
+    /**
+     * Ranking entry for a simplified manga, shaped like {@link MangaDexService#parseMangaItem}
+     */
+    private static MangaItemDTO toItem(ObjectNode manga, Integer followers) {
+        String title = manga.path("title").asText("");
+        String description = manga.path("description").asText("");
+        String cover = manga.path("cover").asText("");
+        return new MangaItemDTO(manga.path("id").asText(), title.isEmpty() ? "Unknown Title" : title,
+                description.isEmpty() ? null : description, followers, cover.isEmpty() ? null : cover);
+    }
+
+    private static String buildCrawlUrl(String since, int offset) {
+        StringBuilder url = new StringBuilder(MANGADEX_API_BASE)
+                .append("/manga?limit=").append(PAGE_SIZE)
+                .append("&offset=").append(offset)
+                .append("&includes[]=cover_art&contentRating[]=safe&contentRating[]=suggestive&contentRating[]=erotica")
+                .append("&order[createdAt]=asc");
+        if (since != null) {
+            url.append("&createdAtSince=").append(URLEncoder.encode(since, StandardCharsets.UTF_8));
+        }
+        return url.toString();
+    }
+
+    /**
+     * Creation date in the YYYY-MM-DDTHH:MM:SS form createdAtSince expects
+     */
+    private static String createdAtOf(JsonNode mangaData) {
+        String createdAt = mangaData.path("attributes").path("createdAt").asText("");
+        if (createdAt.length() < 19) {
+            return null;
+        }
+        return createdAt.substring(0, 19);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
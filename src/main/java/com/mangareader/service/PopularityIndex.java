@@ -0,0 +1,202 @@
+package com.mangareader.service;
+
+import com.mangareader.dto.MangaItemDTO;
+import com.mangareader.dto.PopularMangaResponseDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * In-memory ranking of the MangaDex catalogue by followers, rebuilt in the
+ * background by {@link PopularityCrawler}.
+ *
+ * The ranking is an immutable array sorted by followers (descending, ties by ID)
+ * that is swapped in whole, so reads never lock. Pages can be addressed by offset
+ * or by an opaque cursor naming the last item seen; cursors stay valid across
+ * rebuilds because they locate their position by value, not by index.
+ */
+@Component
+public class PopularityIndex {
+
+    private static final Comparator<MangaItemDTO> BY_FOLLOWERS_DESC = Comparator
+            .comparingInt(PopularityIndex::followersOf).reversed()
+            .thenComparing(MangaItemDTO::getId);
+
+    // Only the top of the ranking keeps descriptions, to bound memory
+    private final int descriptionsKept;
+
+    private volatile MangaItemDTO[] ranking;
+    private volatile long builtAt;
+
+    public PopularityIndex(@Value("${app.popular.descriptions-kept:1000}") int descriptionsKept) {
+        this.descriptionsKept = descriptionsKept;
+    }
+
+    /**
+     * True once a first ranking has been built
+     */
+    public boolean isReady() {
+        return ranking != null;
+    }
+
+    public long getBuiltAt() {
+        return builtAt;
+    }
+
+    public int size() {
+        MangaItemDTO[] current = ranking;
+        return current != null ? current.length : 0;
+    }
+
+    /**
+     * An empty collector for the next crawl, dropping descriptions as it goes
+     */
+    public Crawl newCrawl() {
+        return new Crawl(descriptionsKept);
+    }
+
+    /**
+     * Replace the ranking with a freshly crawled catalogue
+     */
+    public void replace(Collection<MangaItemDTO> items) {
+        MangaItemDTO[] sorted = items.toArray(new MangaItemDTO[0]);
+        Arrays.sort(sorted, BY_FOLLOWERS_DESC);
+
+        for (int i = descriptionsKept; i < sorted.length; i++) {
+            sorted[i] = withoutDescription(sorted[i]);
+        }
+
+        ranking = sorted;
+        builtAt = System.currentTimeMillis();
+    }
+
+    /**
+     * A page of the ranking, starting after the cursor if one is given, otherwise at the offset
+     *
+     * @throws IllegalArgumentException if the cursor cannot be decoded
+     */
+    public PopularMangaResponseDTO page(int limit, int offset, String cursor, boolean ascending) {
+        MangaItemDTO[] current = ranking;
+        int size = current.length;
+
+        int start = cursor != null ? positionAfter(current, decodeCursor(cursor), ascending) : offset;
+        start = Math.min(start, size);
+        int end = Math.min(size, start + limit);
+
+        List<MangaItemDTO> results = new ArrayList<>(end - start);
+        for (int position = start; position < end; position++) {
+            results.add(current[ascending ? size - 1 - position : position]);
+        }
+
+        PopularMangaResponseDTO page = new PopularMangaResponseDTO(size, limit, start, results);
+        if (end < size && !results.isEmpty()) {
+            page.setNextCursor(encodeCursor(results.get(results.size() - 1)));
+        }
+        return page;
+    }
+
+    /**
+     * Position (in the requested order) of the first item after the cursor item
+     */
+    private static int positionAfter(MangaItemDTO[] current, MangaItemDTO key, boolean ascending) {
+        if (!ascending) {
+            // First index sorting strictly after the key
+            return bound(current, key, true);
+        }
+        // Walking the array backwards: next item is just before the key's lower bound
+        return current.length - bound(current, key, false);
+    }
+
+    /**
+     * Binary search for the first index whose item sorts after the key
+     * (or at/after it when strict is false)
+     */
+    private static int bound(MangaItemDTO[] current, MangaItemDTO key, boolean strict) {
+        int low = 0;
+        int high = current.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int cmp = BY_FOLLOWERS_DESC.compare(current[mid], key);
+            if (cmp < 0 || (strict && cmp == 0)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static String encodeCursor(MangaItemDTO item) {
+        String raw = followersOf(item) + ":" + item.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static MangaItemDTO decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(':');
+            int followers = Integer.parseInt(raw.substring(0, separator));
+            return new MangaItemDTO(raw.substring(separator + 1), null, null, followers, null);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    private static int followersOf(MangaItemDTO item) {
+        return item.getFollowers() != null ? item.getFollowers() : 0;
+    }
+
+    private static MangaItemDTO withoutDescription(MangaItemDTO item) {
+        if (item.getDescription() == null) {
+            return item;
+        }
+        return new MangaItemDTO(item.getId(), item.getTitle(), null, item.getFollowers(), item.getCoverUrl());
+    }
+
+    /**
+     * A catalogue being crawled, keyed by ID. Only the items that would currently rank
+     * in the top descriptionsKept keep their description; an item pushed out of it loses
+     * its description right away, so a crawl holds at most that many at once.
+     */
+    public static class Crawl {
+        private final int descriptionsKept;
+        private final Map<String, MangaItemDTO> items = new LinkedHashMap<>();
+        // Items holding a description, lowest ranked at the head
+        private final PriorityQueue<MangaItemDTO> described = new PriorityQueue<>(BY_FOLLOWERS_DESC.reversed());
+
+        Crawl(int descriptionsKept) {
+            this.descriptionsKept = descriptionsKept;
+        }
+
+        /**
+         * Add an item unless one with the same ID was already crawled
+         *
+         * @return false if the ID was already crawled
+         */
+        public boolean add(MangaItemDTO item) {
+            if (items.containsKey(item.getId())) {
+                return false;
+            }
+
+            items.put(item.getId(), item);
+            if (item.getDescription() != null) {
+                described.add(item);
+                if (described.size() > descriptionsKept) {
+                    MangaItemDTO dropped = described.poll();
+                    items.put(dropped.getId(), withoutDescription(dropped));
+                }
+            }
+            return true;
+        }
+
+        public int size() {
+            return items.size();
+        }
+
+        public Collection<MangaItemDTO> values() {
+            return items.values();
+        }
+    }
+}
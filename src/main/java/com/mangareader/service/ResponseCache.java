@@ -0,0 +1,501 @@
+package com.mangareader.service;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mangareader.client.UpstreamClient;
+import com.mangareader.client.UpstreamPriority;
+import com.mangareader.dto.PopularMangaResponseDTO;
+import com.mangareader.exception.UpstreamStatusException;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process cache of API responses built from MangaDex data: manga details,
+ * chapter lists, search results, upstream popular listings and manga looked up in
+ * bulk for library screens.
+ *
+ * Each endpoint has its own region with a TTL and a size cap. Once an entry
+ * expires it is still served for a while (stale-while-revalidate) while a single
+ * background refresh replaces it. Concurrent misses for the same key share one
+ * upstream load, and "not found" answers are cached briefly as well. Loads are
+ * asynchronous: a miss returns the pending load and no thread waits for it.
+ *
+ * Entries are kept for fallback-seconds after they expire. If loading a key fails
+ * (MangaDex down, or its circuit breaker open), the last value loaded for it is
+ * served instead, flagged as stale.
+ *
+ * Cached JSON nodes are shared between requests and must not be modified.
+ */
+@Component
+public class ResponseCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResponseCache.class);
+
+    private final Region<ObjectNode> details;
+    private final Region<ObjectNode> chapters;
+    private final Region<ArrayNode> search;
+    private final Region<PopularMangaResponseDTO> popular;
+    private final Region<ObjectNode> manga;
+
+    private final ScheduledExecutorService scheduler;
+
+    public ResponseCache(@Value("${app.response-cache.enabled:true}") boolean enabled,
+            @Value("${app.response-cache.details.ttl-seconds:600}") long detailsTtl,
+            @Value("${app.response-cache.details.max-entries:5000}") int detailsMax,
+            @Value("${app.response-cache.chapters.ttl-seconds:300}") long chaptersTtl,
+            @Value("${app.response-cache.chapters.max-entries:1000}") int chaptersMax,
+            @Value("${app.response-cache.search.ttl-seconds:300}") long searchTtl,
+            @Value("${app.response-cache.search.max-entries:2000}") int searchMax,
+            @Value("${app.response-cache.popular.ttl-seconds:300}") long popularTtl,
+            @Value("${app.response-cache.popular.max-entries:500}") int popularMax,
+            @Value("${app.response-cache.manga.ttl-seconds:600}") long mangaTtl,
+            @Value("${app.response-cache.manga.max-entries:20000}") int mangaMax,
+            @Value("${app.response-cache.stale-seconds:1800}") long staleSeconds,
+            @Value("${app.response-cache.fallback-seconds:86400}") long fallbackSeconds,
+            @Value("${app.response-cache.not-found-ttl-seconds:60}") long notFoundTtl) {
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "response-cache");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long keepSeconds = Math.max(staleSeconds, fallbackSeconds);
+        this.details = new Region<>("details", enabled, detailsTtl, staleSeconds, keepSeconds, notFoundTtl,
+                detailsMax);
+        this.chapters = new Region<>("chapters", enabled, chaptersTtl, staleSeconds, keepSeconds, notFoundTtl,
+                chaptersMax);
+        this.search = new Region<>("search", enabled, searchTtl, staleSeconds, keepSeconds, notFoundTtl,
+                searchMax);
+        this.popular = new Region<>("popular", enabled, popularTtl, staleSeconds, keepSeconds, notFoundTtl,
+                popularMax);
+        this.manga = new Region<>("manga", enabled, mangaTtl, staleSeconds, keepSeconds, notFoundTtl, mangaMax);
+
+        scheduler.scheduleWithFixedDelay(() -> {
+            details.sweep();
+            chapters.sweep();
+            search.sweep();
+            popular.sweep();
+            manga.sweep();
+        }, 60, 60, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Cached manga details, loading them on a miss. A null value means the manga does not exist.
+     */
+    public CompletableFuture<Cached<ObjectNode>> getDetails(String id, Loader<ObjectNode> loader) {
+        return details.get(normalizeId(id), loader);
+    }
+
+    /**
+     * Cached search results, loading them on a miss
+     */
+    public CompletableFuture<Cached<ArrayNode>> getSearchResults(String query, Loader<ArrayNode> loader) {
+        return search.get(normalizeQuery(query), loader);
+    }
+
+    /**
+     * Cached page of an upstream manga listing, keyed by its MangaDex URL
+     */
+    public CompletableFuture<Cached<PopularMangaResponseDTO>> getPopular(String url,
+            Loader<PopularMangaResponseDTO> loader) {
+        return popular.get(url, loader);
+    }
+
+    /**
+     * Cached chapter list, or null on a miss. Chapter lists are streamed to the client
+     * when first fetched and stored afterwards with {@link #putChapters}; the loader is
+     * only used to refresh a stale entry in the background.
+     */
+    public ObjectNode getChapters(String id, Loader<ObjectNode> refresher) {
+        return chapters.getIfPresent(normalizeId(id), refresher);
+    }
+
+    public void putChapters(String id, ObjectNode value) {
+        chapters.put(normalizeId(id), value, false);
+    }
+
+    /**
+     * Last chapter list stored for a manga however old, for when fetching a fresh one
+     * failed; null if there is none
+     */
+    public Cached<ObjectNode> getChaptersFallback(String id) {
+        return chapters.fallback(normalizeId(id));
+    }
+
+    /**
+     * Manga that are fresh in the cache, from either a details response or a bulk
+     * lookup; never loads or refreshes. IDs with a cached "not found" map to null,
+     * IDs that are missing or expired are left out.
+     *
+     * @return normalized ID -> simplified manga
+     */
+    public Map<String, ObjectNode> peekManga(Collection<String> ids) {
+        Map<String, ObjectNode> result = new HashMap<>();
+        for (String id : ids) {
+            String key = normalizeId(id);
+            Entry<ObjectNode> entry = details.peek(key);
+            if (entry == null) {
+                entry = manga.peek(key);
+            }
+            if (entry != null) {
+                result.put(key, entry.value);
+            } else if (manga.enabled) {
+                manga.misses.incrementAndGet();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Store a manga looked up in bulk; null means it does not exist
+     */
+    public void putManga(String id, ObjectNode value) {
+        manga.put(normalizeId(id), value, value == null);
+    }
+
+    /**
+     * Last copy of a manga from a bulk lookup or details response however old, for
+     * when looking it up failed; null if there is none
+     */
+    public Cached<ObjectNode> getMangaFallback(String id) {
+        String key = normalizeId(id);
+        Cached<ObjectNode> fallback = manga.fallback(key);
+        return fallback != null ? fallback : details.fallback(key);
+    }
+
+    /**
+     * Hit/miss counters and sizes per region, for status pages
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (Region<?> region : List.of(details, chapters, search, popular, manga)) {
+            result.put(region.name, region.snapshot());
+        }
+        return result;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Manga IDs are UUIDs; compare them case-insensitively
+     */
+    static String normalizeId(String id) {
+        return id.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Search queries that differ only in case or whitespace share an entry
+     */
+    static String normalizeQuery(String query) {
+        return query.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Starts loading a value from upstream. Completing with null (or failing with a
+     * 404 {@link UpstreamStatusException}) means "not found".
+     */
+    public interface Loader<V> {
+        CompletableFuture<V> load();
+    }
+
+    /**
+     * A value served from the cache. Stale means loading it failed and this is the
+     * last value MangaDex returned, fetched at {@link #getFetchedAt()}.
+     */
+    public static class Cached<V> {
+        private final V value;
+        private final boolean stale;
+        private final long fetchedAt;
+
+        Cached(V value, boolean stale, long fetchedAt) {
+            this.value = value;
+            this.stale = stale;
+            this.fetchedAt = fetchedAt;
+        }
+
+        /**
+         * A value that was not served as a fallback
+         */
+        public static <V> Cached<V> fresh(V value) {
+            return new Cached<>(value, false, System.currentTimeMillis());
+        }
+
+        public V getValue() {
+            return value;
+        }
+
+        public boolean isStale() {
+            return stale;
+        }
+
+        public long getFetchedAt() {
+            return fetchedAt;
+        }
+
+        public long getAgeSeconds() {
+            return Math.max(0, (System.currentTimeMillis() - fetchedAt) / 1000);
+        }
+    }
+
+    /**
+     * One endpoint's entries and settings
+     */
+    private class Region<V> {
+        final String name;
+        final boolean enabled;
+        final long ttlMs;
+        final long staleMs;
+        final long keepMs;
+        final long notFoundTtlMs;
+        final int maxEntries;
+
+        final Map<String, Entry<V>> entries = new ConcurrentHashMap<>();
+        final Map<String, CompletableFuture<V>> loads = new ConcurrentHashMap<>();
+
+        final AtomicLong hits = new AtomicLong();
+        final AtomicLong staleHits = new AtomicLong();
+        final AtomicLong misses = new AtomicLong();
+        final AtomicLong fallbacks = new AtomicLong();
+
+        Region(String name, boolean enabled, long ttlSeconds, long staleSeconds, long keepSeconds,
+                long notFoundTtlSeconds, int maxEntries) {
+            this.name = name;
+            this.enabled = enabled;
+            this.ttlMs = ttlSeconds * 1000;
+            this.staleMs = staleSeconds * 1000;
+            this.keepMs = keepSeconds * 1000;
+            this.notFoundTtlMs = notFoundTtlSeconds * 1000;
+            this.maxEntries = maxEntries;
+        }
+
+        CompletableFuture<Cached<V>> get(String key, Loader<V> loader) {
+            if (!enabled) {
+                return loadValue(loader).thenApply(Cached::fresh);
+            }
+
+            Entry<V> entry = lookup(key, loader);
+            if (entry != null) {
+                return CompletableFuture.completedFuture(new Cached<>(entry.value, false, entry.fetchedAt));
+            }
+
+            misses.incrementAndGet();
+            return load(key, loader).handle((value, error) -> {
+                if (error == null) {
+                    return Cached.fresh(value);
+                }
+                Cached<V> fallback = fallback(key);
+                if (fallback == null) {
+                    throw new CompletionException(UpstreamClient.unwrap(error));
+                }
+                logger.warn("Serving {} entry {} from {} s ago: {}", name, key, fallback.getAgeSeconds(),
+                        UpstreamClient.unwrap(error).getMessage());
+                return fallback;
+            });
+        }
+
+        /**
+         * Last value loaded for a key however old, or null if there is none
+         */
+        Cached<V> fallback(String key) {
+            if (!enabled) {
+                return null;
+            }
+            Entry<V> entry = entries.get(key);
+            if (entry == null || entry.notFound) {
+                return null;
+            }
+            fallbacks.incrementAndGet();
+            entry.lastAccess = System.currentTimeMillis();
+            return new Cached<>(entry.value, true, entry.fetchedAt);
+        }
+
+        /**
+         * Unexpired entry for a key, without serving or refreshing stale ones
+         */
+        Entry<V> peek(String key) {
+            if (!enabled) {
+                return null;
+            }
+            Entry<V> entry = entries.get(key);
+            long now = System.currentTimeMillis();
+            if (entry == null || now >= entry.expiresAt) {
+                return null;
+            }
+            entry.lastAccess = now;
+            hits.incrementAndGet();
+            return entry;
+        }
+
+        V getIfPresent(String key, Loader<V> refresher) {
+            if (!enabled) {
+                return null;
+            }
+
+            Entry<V> entry = lookup(key, refresher);
+            if (entry != null) {
+                return entry.value;
+            }
+
+            misses.incrementAndGet();
+            return null;
+        }
+
+        /**
+         * Fresh or still-servable entry for a key, scheduling a refresh if it is stale
+         */
+        private Entry<V> lookup(String key, Loader<V> refresher) {
+            Entry<V> entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+
+            long now = System.currentTimeMillis();
+            entry.lastAccess = now;
+
+            if (now < entry.expiresAt) {
+                hits.incrementAndGet();
+                return entry;
+            }
+
+            // Not-found answers are never served stale
+            if (!entry.notFound && now < entry.expiresAt + staleMs) {
+                staleHits.incrementAndGet();
+                refreshInBackground(key, refresher);
+                return entry;
+            }
+
+            return null;
+        }
+
+        void put(String key, V value, boolean notFound) {
+            if (!enabled) {
+                return;
+            }
+
+            long ttl = notFound ? notFoundTtlMs : ttlMs;
+            long now = System.currentTimeMillis();
+            entries.put(key, new Entry<>(value, notFound, now, now + ttl));
+            if (entries.size() > maxEntries) {
+                evictLeastRecentlyUsed();
+            }
+        }
+
+        private void refreshInBackground(String key, Loader<V> loader) {
+            if (!loads.containsKey(key)) {
+                UpstreamPriority.runInBackground(() -> load(key, loader));
+            }
+        }
+
+        /**
+         * Start (or join) the load for a key; the caller that registers it starts it
+         */
+        private CompletableFuture<V> load(String key, Loader<V> loader) {
+            CompletableFuture<V> created = new CompletableFuture<>();
+            CompletableFuture<V> existing = loads.putIfAbsent(key, created);
+            if (existing != null) {
+                return existing;
+            }
+
+            loadValue(loader).whenComplete((value, error) -> {
+                if (error == null) {
+                    put(key, value, value == null);
+                    created.complete(value);
+                } else {
+                    Throwable cause = UpstreamClient.unwrap(error);
+                    logger.debug("Loading {} entry {} failed: {}", name, key, cause.getMessage());
+                    created.completeExceptionally(cause);
+                }
+                loads.remove(key, created);
+            });
+            return created;
+        }
+
+        /**
+         * Run a loader, turning a 404 from upstream into "not found"
+         */
+        private CompletableFuture<V> loadValue(Loader<V> loader) {
+            CompletableFuture<V> loading;
+            try {
+                loading = loader.load();
+            } catch (RuntimeException e) {
+                loading = CompletableFuture.failedFuture(e);
+            }
+
+            return loading.handle((value, error) -> {
+                if (error == null) {
+                    return value;
+                }
+                Throwable cause = UpstreamClient.unwrap(error);
+                if (cause instanceof UpstreamStatusException
+                        && ((UpstreamStatusException) cause).getStatusCode() == 404) {
+                    return null;
+                }
+                throw new CompletionException(cause);
+            });
+        }
+
+        /**
+         * Drop entries that can no longer be served, even as a fallback
+         */
+        void sweep() {
+            long now = System.currentTimeMillis();
+            entries.values().removeIf(entry -> now >= entry.expiresAt + (entry.notFound ? 0 : keepMs));
+        }
+
+        /**
+         * Enforce the size cap by dropping the least recently read tenth of the region
+         */
+        private synchronized void evictLeastRecentlyUsed() {
+            if (entries.size() <= maxEntries) {
+                return;
+            }
+
+            List<Map.Entry<String, Entry<V>>> all = new ArrayList<>(entries.entrySet());
+            all.sort(Comparator.comparingLong(e -> e.getValue().lastAccess));
+
+            int toRemove = entries.size() - maxEntries + Math.max(1, maxEntries / 10);
+            for (int i = 0; i < toRemove && i < all.size(); i++) {
+                entries.remove(all.get(i).getKey(), all.get(i).getValue());
+            }
+        }
+
+        Map<String, Object> snapshot() {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("entries", entries.size());
+            result.put("hits", hits.get());
+            result.put("staleHits", staleHits.get());
+            result.put("misses", misses.get());
+            result.put("fallbacks", fallbacks.get());
+            return result;
+        }
+    }
+
+    /**
+     * A cached value (null for "not found") with its load time, expiry and last access time
+     */
+    private static class Entry<V> {
+        final V value;
+        final boolean notFound;
+        final long fetchedAt;
+        final long expiresAt;
+        volatile long lastAccess;
+
+        Entry(V value, boolean notFound, long fetchedAt, long expiresAt) {
+            this.value = value;
+            this.notFound = notFound;
+            this.fetchedAt = fetchedAt;
+            this.expiresAt = expiresAt;
+            this.lastAccess = System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.mangareader.service;
+
+import com.mangareader.exception.UpstreamStreamException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpHeaders;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A single upstream image download shared by every concurrent request for the same image.
+ *
+ * The first request (the leader) downloads the image and tees it into the disk cache's
+ * temporary file. Later requests (followers) tail that file, receiving bytes as soon as the
+ * leader has written them, so upstream sees one transfer regardless of fan-in.
+ *
+ * State is guarded by a ReentrantLock rather than the object monitor, so followers
+ * waiting for bytes on virtual threads do not pin their carrier thread.
+ */
+class SharedDownload {
+
+    private static final long WAIT_TIMEOUT_MS = 30 * 1000;
+
+    private final String key;
+    private final Map<String, SharedDownload> registry;
+    private final CompletableFuture<HttpHeaders> opened = new CompletableFuture<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition progress = lock.newCondition();
+
+    // Guarded by lock
+    private ImageDiskCache.Writer writer;
+    private long written;
+    private boolean finished;
+    private boolean failed;
+    private int followers;
+
+    SharedDownload(String key, Map<String, SharedDownload> registry) {
+        this.key = key;
+        this.registry = registry;
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    /**
+     * Leader received a 200 from upstream and is about to stream the body.
+     * A null writer means the cache could not take the entry, so there is
+     * nothing for followers to read and the download is not shared.
+     */
+    void opened(HttpHeaders headers, ImageDiskCache.Writer writer) {
+        lock.lock();
+        try {
+            this.writer = writer;
+            if (writer == null) {
+                finished = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (writer == null) {
+            registry.remove(key, this);
+        }
+        opened.complete(headers);
+    }
+
+    /**
+     * Leader could not open the download; followers get the same error
+     */
+    void openFailed(IOException e) {
+        lock.lock();
+        try {
+            finished = true;
+            failed = true;
+        } finally {
+            lock.unlock();
+        }
+        registry.remove(key, this);
+        opened.completeExceptionally(e);
+    }
+
+    /**
+     * Attach to this download as a follower. Returns null if the download can no longer
+     * be shared (already finished or lost its cache file); the caller should then fetch
+     * on its own.
+     */
+    UpstreamImage follow() throws IOException {
+        HttpHeaders headers;
+        try {
+            headers = opened.get(WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw new IOException(cause.getMessage(), cause);
+        } catch (TimeoutException e) {
+            throw new IOException("Timed out waiting for shared download of " + key, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Image fetch interrupted", e);
+        }
+
+        lock.lock();
+        try {
+            if (finished || writer == null || !writer.isOpen()) {
+                return null;
+            }
+
+            // Open while the temp file is guaranteed to exist; the descriptor stays
+            // readable after the file is renamed into the cache or deleted
+            FileChannel channel = FileChannel.open(writer.getTempPath(), StandardOpenOption.READ);
+            followers++;
+            return new UpstreamImage(200, headers, new TailInputStream(channel), null);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean hasFollowers() {
+        lock.lock();
+        try {
+            return followers > 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Leader appends a chunk it received from upstream
+     */
+    void append(byte[] bytes, int offset, int length) {
+        writer.write(bytes, offset, length);
+
+        lock.lock();
+        try {
+            if (!writer.isOpen()) {
+                // The cache gave up on this entry, followers have nothing left to read
+                failed = true;
+            }
+            written += length;
+            progress.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Leader received the full body: publish it to the cache and wake followers
+     */
+    void complete() {
+        lock.lock();
+        try {
+            if (finished) {
+                return;
+            }
+            registry.remove(key, this);
+            writer.commit();
+            finished = true;
+            progress.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Leader failed mid-stream (or gave up): drop the entry and fail followers
+     */
+    void fail() {
+        lock.lock();
+        try {
+            if (finished) {
+                return;
+            }
+            registry.remove(key, this);
+            writer.abort();
+            finished = true;
+            failed = true;
+            progress.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reads the leader's temp file, blocking until more bytes are written or the
+     * download finishes
+     */
+    private class TailInputStream extends InputStream {
+        private final FileChannel channel;
+        private long position;
+        private boolean closed;
+
+        TailInputStream(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int read = read(single, 0, 1);
+            return read < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            long available;
+            lock.lock();
+            try {
+                long deadline = System.currentTimeMillis() + WAIT_TIMEOUT_MS;
+                while (position >= written && !finished && !failed) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        throw new UpstreamStreamException("Shared download of " + key + " stalled", null);
+                    }
+                    try {
+                        progress.await(remaining, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Image fetch interrupted", e);
+                    }
+                }
+
+                if (failed) {
+                    throw new UpstreamStreamException("Shared download of " + key + " failed", null);
+                }
+                available = written - position;
+            } finally {
+                lock.unlock();
+            }
+
+            if (available <= 0) {
+                return -1;
+            }
+
+            int read = channel.read(ByteBuffer.wrap(bytes, offset, (int) Math.min(length, available)), position);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            lock.lock();
+            try {
+                followers--;
+            } finally {
+                lock.unlock();
+            }
+            channel.close();
+        }
+    }
+}
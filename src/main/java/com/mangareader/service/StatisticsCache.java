@@ -0,0 +1,335 @@
+package com.mangareader.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mangareader.client.UpstreamClient;
+import com.mangareader.client.UpstreamEndpoint;
+import com.mangareader.dto.mangadex.MangaDexStatisticsDTO;
+import com.mangareader.dto.mangadex.MangaDexStatisticsDTO.MangaStatistics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-manga cache of MangaDex statistics (follows, rating, comments).
+ *
+ * A lookup only asks upstream for the IDs that are missing or expired, and an ID
+ * already being fetched by another request is waited on rather than requested twice.
+ * Missing IDs from concurrent lookups are collected for app.statistics.batch-window-ms
+ * and requested together, in batches of up to app.statistics.batch-size. If a refresh
+ * fails, the expired value is returned instead.
+ */
+@Component
+public class StatisticsCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(StatisticsCache.class);
+    private static final String MANGADEX_API_BASE = "https://api.mangadex.org";
+
+    private final UpstreamClient upstreamClient;
+    private final ObjectMapper mapper;
+    private final long ttlMs;
+    private final long maxStaleMs;
+    private final int maxEntries;
+    private final int batchSize;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<MangaStatistics>> inFlight = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final MicroBatcher<String> batcher;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    public StatisticsCache(UpstreamClient upstreamClient, ObjectMapper mapper,
+            @Value("${app.statistics.ttl-seconds:900}") long ttlSeconds,
+            @Value("${app.statistics.max-stale-seconds:21600}") long maxStaleSeconds,
+            @Value("${app.statistics.max-entries:20000}") int maxEntries,
+            @Value("${app.statistics.batch-size:100}") int batchSize,
+            @Value("${app.statistics.batch-window-ms:5}") long batchWindowMs) {
+        this.upstreamClient = upstreamClient;
+        this.mapper = mapper;
+        this.ttlMs = ttlSeconds * 1000;
+        this.maxStaleMs = maxStaleSeconds * 1000;
+        this.maxEntries = maxEntries;
+        this.batchSize = batchSize;
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "statistics-cache");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::sweep, 60, 60, TimeUnit.SECONDS);
+        this.batcher = new MicroBatcher<>(batchWindowMs, batchSize, this::fetchBatch, scheduler);
+    }
+
+    /**
+     * Statistics for the given manga, waiting for whatever has to be fetched.
+     * IDs whose statistics could not be fetched (and were never cached) are absent.
+     */
+    public Map<String, MangaStatistics> getAll(Collection<String> ids) {
+        try {
+            return getAllAsync(ids).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.warn("Error fetching manga statistics: {}", e.getCause().getMessage());
+        }
+        return peekAll(ids);
+    }
+
+    /**
+     * Like {@link #getAllAsync(Collection)}, but completes after the timeout at the
+     * latest, with only what is cached. Fetches still in flight keep filling the cache.
+     */
+    public CompletableFuture<Map<String, MangaStatistics>> getAllAsync(Collection<String> ids, long timeoutMs) {
+        return getAllAsync(ids)
+                .completeOnTimeout(null, timeoutMs, TimeUnit.MILLISECONDS)
+                .thenApply(result -> {
+                    if (result != null) {
+                        return result;
+                    }
+                    logger.debug("Statistics not available in time for {} manga", ids.size());
+                    return peekAll(ids);
+                });
+    }
+
+    /**
+     * Statistics for the given manga, completing once the missing ones have been
+     * fetched. Never completes exceptionally: failed IDs fall back to expired
+     * values or are left out.
+     */
+    public CompletableFuture<Map<String, MangaStatistics>> getAllAsync(Collection<String> ids) {
+        long now = System.currentTimeMillis();
+        Map<String, MangaStatistics> cached = new HashMap<>();
+        Map<String, CompletableFuture<MangaStatistics>> pending = new HashMap<>();
+        List<String> toFetch = new ArrayList<>();
+
+        for (String rawId : new LinkedHashSet<>(ids)) {
+            String id = ResponseCache.normalizeId(rawId);
+            Entry entry = entries.get(id);
+            if (entry != null && now < entry.expiresAt) {
+                entry.lastAccess = now;
+                hits.incrementAndGet();
+                cached.put(rawId, entry.value);
+                continue;
+            }
+
+            misses.incrementAndGet();
+            CompletableFuture<MangaStatistics> created = new CompletableFuture<>();
+            CompletableFuture<MangaStatistics> existing = inFlight.putIfAbsent(id, created);
+            if (existing != null) {
+                pending.put(rawId, existing);
+            } else {
+                pending.put(rawId, created);
+                toFetch.add(id);
+            }
+        }
+
+        batcher.addAll(toFetch);
+
+        if (pending.isEmpty()) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        return CompletableFuture.allOf(pending.values().toArray(new CompletableFuture<?>[0]))
+                .handle((ignored, error) -> {
+                    Map<String, MangaStatistics> result = new HashMap<>(cached);
+                    pending.forEach((id, future) -> {
+                        MangaStatistics value = future.isCompletedExceptionally() ? null : future.join();
+                        if (value == null) {
+                            value = peek(id);
+                        }
+                        if (value != null) {
+                            result.put(id, value);
+                        }
+                    });
+                    return result;
+                });
+    }
+
+    /**
+     * Statistics for a bulk walk over the catalogue, such as the popularity crawl.
+     * Fresh cached values are used, but nothing fetched here is cached, so the walk
+     * neither evicts what live requests read nor pushes the cache past its cap.
+     * Requests upstream on the calling thread, batchSize IDs at a time; batches that
+     * fail fall back to cached values or are left out.
+     */
+    public Map<String, MangaStatistics> getAllUncached(Collection<String> ids) {
+        long now = System.currentTimeMillis();
+        Map<String, MangaStatistics> result = new HashMap<>();
+        Map<String, String> toFetch = new LinkedHashMap<>();
+
+        for (String rawId : ids) {
+            String id = ResponseCache.normalizeId(rawId);
+            Entry entry = entries.get(id);
+            if (entry != null && now < entry.expiresAt) {
+                result.put(rawId, entry.value);
+            } else {
+                toFetch.putIfAbsent(id, rawId);
+            }
+        }
+
+        List<String> missing = new ArrayList<>(toFetch.keySet());
+        for (int start = 0; start < missing.size(); start += batchSize) {
+            List<String> batch = missing.subList(start, Math.min(start + batchSize, missing.size()));
+            batches.incrementAndGet();
+            try {
+                Map<String, MangaStatistics> statistics = parse(upstreamClient.getBytes(batchUrl(batch),
+                        UpstreamEndpoint.API));
+                for (String id : batch) {
+                    result.put(toFetch.get(id), statistics.getOrDefault(id, new MangaStatistics()));
+                }
+            } catch (IOException | UncheckedIOException e) {
+                logger.warn("Error fetching statistics for {} manga: {}", batch.size(), e.getMessage());
+                for (String id : batch) {
+                    MangaStatistics value = peek(id);
+                    if (value != null) {
+                        result.put(toFetch.get(id), value);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Request one batch of IDs and complete their in-flight futures
+     */
+    private void fetchBatch(List<String> ids) {
+        List<String> batch = new ArrayList<>(ids);
+        batches.incrementAndGet();
+
+        upstreamClient.getBytesAsync(batchUrl(batch), UpstreamEndpoint.API)
+                .thenApply(this::parse)
+                .whenComplete((statistics, error) -> {
+                    long expiresAt = System.currentTimeMillis() + ttlMs;
+                    for (String id : batch) {
+                        CompletableFuture<MangaStatistics> future = inFlight.remove(id);
+                        if (error != null) {
+                            if (future != null) {
+                                future.completeExceptionally(error);
+                            }
+                            continue;
+                        }
+
+                        // MangaDex leaves out IDs it has no statistics for; remember that too
+                        MangaStatistics value = statistics.getOrDefault(id, new MangaStatistics());
+                        entries.put(id, new Entry(value, expiresAt));
+                        if (future != null) {
+                            future.complete(value);
+                        }
+                    }
+
+                    if (error != null) {
+                        logger.warn("Error fetching statistics for {} manga: {}", batch.size(), error.getMessage());
+                    } else if (entries.size() > maxEntries) {
+                        evictLeastRecentlyUsed();
+                    }
+                });
+    }
+
+    private static String batchUrl(List<String> ids) {
+        return MANGADEX_API_BASE + "/statistics/manga?manga[]=" + String.join("&manga[]=", ids);
+    }
+
+    private Map<String, MangaStatistics> parse(byte[] body) {
+        try {
+            MangaDexStatisticsDTO response = mapper.readValue(body, MangaDexStatisticsDTO.class);
+            Map<String, MangaStatistics> result = new HashMap<>();
+            if (response.getStatistics() != null) {
+                response.getStatistics().forEach((id, stats) -> {
+                    if (stats != null) {
+                        result.put(ResponseCache.normalizeId(id), stats);
+                    }
+                });
+            }
+            return result;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Cached statistics for the IDs, expired or not, without going upstream
+     */
+    public Map<String, MangaStatistics> peekAll(Collection<String> ids) {
+        Map<String, MangaStatistics> result = new HashMap<>();
+        for (String id : ids) {
+            MangaStatistics value = peek(id);
+            if (value != null) {
+                result.put(id, value);
+            }
+        }
+        return result;
+    }
+
+    private MangaStatistics peek(String id) {
+        Entry entry = entries.get(ResponseCache.normalizeId(id));
+        return entry != null ? entry.value : null;
+    }
+
+    /**
+     * Drop entries expired for longer than they may be used as a fallback
+     */
+    private void sweep() {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(entry -> now >= entry.expiresAt + maxStaleMs);
+    }
+
+    /**
+     * Enforce the size cap by dropping the least recently read tenth of the entries
+     */
+    private synchronized void evictLeastRecentlyUsed() {
+        if (entries.size() <= maxEntries) {
+            return;
+        }
+
+        List<Map.Entry<String, Entry>> all = new ArrayList<>(entries.entrySet());
+        all.sort(Comparator.comparingLong(e -> e.getValue().lastAccess));
+
+        int toRemove = entries.size() - maxEntries + Math.max(1, maxEntries / 10);
+        for (int i = 0; i < toRemove && i < all.size(); i++) {
+            entries.remove(all.get(i).getKey(), all.get(i).getValue());
+        }
+    }
+
+    /**
+     * Entry count, hit/miss counters and upstream batches, for status pages
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("entries", entries.size());
+        result.put("hits", hits.get());
+        result.put("misses", misses.get());
+        result.put("batches", batches.get());
+        return result;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Cached statistics with their expiry and last access time
+     */
+    private static class Entry {
+        final MangaStatistics value;
+        final long expiresAt;
+        volatile long lastAccess;
+
+        Entry(MangaStatistics value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+            this.lastAccess = System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package com.mangareader.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Title autocomplete over the crawled catalogue, rebuilt by {@link PopularityCrawler}.
+ *
+ * Every normalized title (main and alternative titles, plus the main title from each of
+ * its words on) becomes a key. The keys are sorted and packed into one char array, which
+ * is the flattened leaf order of a trie: the keys starting with a prefix are a contiguous
+ * range found by binary search. A min segment tree over the manga numbers of the keys
+ * (numbered by followers) then yields the most followed manga in that range one at a
+ * time, so a lookup costs O(k log n) however common the prefix is, where k counts the
+ * matching keys of the manga returned.
+ *
+ * The structure is immutable and swapped in whole, so lookups never lock.
+ */
+@Component
+public class TitleSuggester {
+
+    // Suggestions a single lookup may return
+    public static final int MAX_SUGGESTIONS = 20;
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * True once a first catalogue has been indexed
+     */
+    public boolean isReady() {
+        return snapshot != null;
+    }
+
+    public int keyCount() {
+        Snapshot current = snapshot;
+        return current != null ? current.keyOffsets.length - 1 : 0;
+    }
+
+    /**
+     * Replace the suggestions with a freshly crawled catalogue
+     */
+    public void replace(Collection<Entry> catalogue) {
+        Entry[] entries = catalogue.toArray(new Entry[0]);
+        Arrays.sort(entries, Comparator.comparingInt((Entry e) -> e.followers).reversed()
+                .thenComparing(e -> e.id));
+
+        // (key, manga number) pairs, deduplicated per manga
+        List<String> keys = new ArrayList<>();
+        List<Integer> owners = new ArrayList<>();
+        for (int manga = 0; manga < entries.length; manga++) {
+            for (String key : entries[manga].keys) {
+                keys.add(key);
+                owners.add(manga);
+            }
+            entries[manga].keys = null;
+        }
+
+        Integer[] order = new Integer[keys.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparing(keys::get));
+
+        int totalChars = 0;
+        for (String key : keys) {
+            totalChars += key.length();
+        }
+        char[] chars = new char[totalChars];
+        int[] offsets = new int[order.length + 1];
+        int[] keyOwners = new int[order.length];
+        int position = 0;
+        for (int i = 0; i < order.length; i++) {
+            String key = keys.get(order[i]);
+            key.getChars(0, key.length(), chars, position);
+            offsets[i] = position;
+            position += key.length();
+            keyOwners[i] = owners.get(order[i]);
+        }
+        offsets[order.length] = position;
+
+        String[] ids = new String[entries.length];
+        String[] titles = new String[entries.length];
+        int[] followers = new int[entries.length];
+        for (int manga = 0; manga < entries.length; manga++) {
+            ids[manga] = entries[manga].id;
+            titles[manga] = entries[manga].title;
+            followers[manga] = entries[manga].followers;
+        }
+
+        snapshot = new Snapshot(chars, offsets, keyOwners, buildTree(keyOwners), ids, titles, followers);
+    }
+
+    /**
+     * The most followed manga with a title starting with the query, at most limit of them
+     */
+    public List<Suggestion> suggest(String query, int limit) {
+        Snapshot current = snapshot;
+        String prefix = normalizeTitle(query);
+        if (current == null || prefix.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        limit = Math.min(limit, MAX_SUGGESTIONS);
+
+        int from = current.lowerBound(prefix, false);
+        int to = current.lowerBound(prefix, true);
+        if (from >= to) {
+            return Collections.emptyList();
+        }
+
+        // Candidate ranges ordered by their most followed manga. Each pop yields a key and
+        // splits its range in two, so manga come out in follower order and one matched by
+        // several keys comes up once per key before the next manga
+        RangeHeap heap = new RangeHeap(current, 2 * limit + 2);
+        heap.push(from, to);
+
+        int[] found = new int[limit];
+        int count = 0;
+        while (heap.size > 0 && count < limit) {
+            int key = heap.best[0];
+            int left = heap.from[0];
+            int right = heap.to[0];
+            heap.pop();
+
+            int manga = current.keyOwners[key];
+            if (count == 0 || found[count - 1] != manga) {
+                found[count++] = manga;
+            }
+            heap.push(left, key);
+            heap.push(key + 1, right);
+        }
+
+        List<Suggestion> suggestions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int manga = found[i];
+            suggestions.add(new Suggestion(current.ids[manga], current.titles[manga], current.followers[manga]));
+        }
+        return suggestions;
+    }
+
+    /**
+     * Normalized form of a title: the catalogue index's terms joined by single spaces
+     */
+    static String normalizeTitle(String title) {
+        return String.join(" ", CatalogueIndex.normalize(title));
+    }
+
+    /**
+     * Bottom-up segment tree over key positions; each node holds the key with the
+     * smallest (most followed) manga number below it
+     */
+    private static int[] buildTree(int[] keyOwners) {
+        int n = keyOwners.length;
+        int[] tree = new int[2 * n];
+        for (int i = 0; i < n; i++) {
+            tree[n + i] = i;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int a = tree[2 * i];
+            int b = tree[2 * i + 1];
+            tree[i] = keyOwners[a] <= keyOwners[b] ? a : b;
+        }
+        return tree;
+    }
+
+    /**
+     * A manga to offer suggestions for
+     */
+    public static class Entry {
+        private final String id;
+        private final String title;
+        private final int followers;
+        private String[] keys;
+
+        /**
+         * @param id        manga ID
+         * @param title     title to display, as extracted by MangaDexParser
+         * @param titles    every title and alternative title
+         * @param followers follow count, or null if unknown
+         */
+        public Entry(String id, String title, List<String> titles, Integer followers) {
+            this.id = id;
+            this.title = title;
+            this.followers = followers != null ? followers : 0;
+
+            Set<String> keySet = new LinkedHashSet<>();
+            for (String text : titles) {
+                keySet.add(normalizeTitle(text));
+            }
+            // The display title can also be completed from any of its words
+            List<String> words = CatalogueIndex.normalize(title);
+            for (int start = 0; start < words.size(); start++) {
+                keySet.add(String.join(" ", words.subList(start, words.size())));
+            }
+            keySet.remove("");
+            this.keys = keySet.toArray(new String[0]);
+        }
+    }
+
+    /**
+     * One suggested title
+     */
+    public static class Suggestion {
+        private final String id;
+        private final String title;
+        private final int followers;
+
+        Suggestion(String id, String title, int followers) {
+            this.id = id;
+            this.title = title;
+            this.followers = followers;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public int getFollowers() {
+            return followers;
+        }
+    }
+
+    /**
+     * Min-heap of key ranges keyed by the most followed manga in each. It grows as
+     * needed, since a manga with many matching titles splits a range once per title
+     */
+    private static class RangeHeap {
+        private final Snapshot snapshot;
+        private int[] from;
+        private int[] to;
+        private int[] best;
+        private int size;
+
+        RangeHeap(Snapshot snapshot, int capacity) {
+            this.snapshot = snapshot;
+            this.from = new int[capacity];
+            this.to = new int[capacity];
+            this.best = new int[capacity];
+        }
+
+        /**
+         * Add the range [left, right) unless it is empty
+         */
+        void push(int left, int right) {
+            if (left >= right) {
+                return;
+            }
+            if (size == from.length) {
+                from = Arrays.copyOf(from, 2 * size);
+                to = Arrays.copyOf(to, 2 * size);
+                best = Arrays.copyOf(best, 2 * size);
+            }
+            int key = snapshot.bestKey(left, right);
+            int i = size++;
+            // Sift up
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (snapshot.keyOwners[best[parent]] <= snapshot.keyOwners[key]) {
+                    break;
+                }
+                from[i] = from[parent];
+                to[i] = to[parent];
+                best[i] = best[parent];
+                i = parent;
+            }
+            from[i] = left;
+            to[i] = right;
+            best[i] = key;
+        }
+
+        /**
+         * Remove the root
+         */
+        void pop() {
+            size--;
+            int left = from[size];
+            int right = to[size];
+            int key = best[size];
+            int i = 0;
+            // Sift down
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && snapshot.keyOwners[best[child + 1]] < snapshot.keyOwners[best[child]]) {
+                    child++;
+                }
+                if (snapshot.keyOwners[key] <= snapshot.keyOwners[best[child]]) {
+                    break;
+                }
+                from[i] = from[child];
+                to[i] = to[child];
+                best[i] = best[child];
+                i = child;
+            }
+            from[i] = left;
+            to[i] = right;
+            best[i] = key;
+        }
+    }
+
+    /**
+     * An immutable build of the suggestions
+     */
+    private static class Snapshot {
+        final char[] keyChars;
+        final int[] keyOffsets;
+        final int[] keyOwners;
+        final int[] tree;
+        final String[] ids;
+        final String[] titles;
+        final int[] followers;
+
+        Snapshot(char[] keyChars, int[] keyOffsets, int[] keyOwners, int[] tree, String[] ids, String[] titles,
+                int[] followers) {
+            this.keyChars = keyChars;
+            this.keyOffsets = keyOffsets;
+            this.keyOwners = keyOwners;
+            this.tree = tree;
+            this.ids = ids;
+            this.titles = titles;
+            this.followers = followers;
+        }
+
+        /**
+         * First key not sorting before the prefix, or (afterPrefix) first key sorting
+         * after every key that starts with it
+         */
+        int lowerBound(String prefix, boolean afterPrefix) {
+            int low = 0;
+            int high = keyOwners.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                int cmp = compareToPrefix(mid, prefix);
+                if (cmp < 0 || (afterPrefix && cmp == 0)) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Compare a key with a prefix: 0 if the key starts with it
+         */
+        private int compareToPrefix(int key, String prefix) {
+            int start = keyOffsets[key];
+            int length = keyOffsets[key + 1] - start;
+            int common = Math.min(length, prefix.length());
+            for (int i = 0; i < common; i++) {
+                int diff = keyChars[start + i] - prefix.charAt(i);
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+            return length >= prefix.length() ? 0 : -1;
+        }
+
+        /**
+         * Key with the most followed manga in [from, to)
+         */
+        int bestKey(int from, int to) {
+            int n = keyOwners.length;
+            int best = from;
+            for (int left = from + n, right = to + n; left < right; left >>= 1, right >>= 1) {
+                if ((left & 1) == 1) {
+                    best = better(best, tree[left++]);
+                }
+                if ((right & 1) == 1) {
+                    best = better(best, tree[--right]);
+                }
+            }
+            return best;
+        }
+
+        private int better(int a, int b) {
+            return keyOwners[a] <= keyOwners[b] ? a : b;
+        }
+    }
+}
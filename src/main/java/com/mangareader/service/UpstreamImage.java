@@ -0,0 +1,182 @@
+package com.mangareader.service;
+
+import com.mangareader.exception.UpstreamStreamException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.http.HttpHeaders;
+
+/**
+ * An open upstream image download.
+ *
+ * The body is copied to the client through a small fixed buffer as it arrives. When
+ * this is the leader of a {@link SharedDownload} it is also teed into the disk cache,
+ * where concurrent requests for the same image read it; the cache entry is only
+ * committed once the full body has been received.
+ */
+public class UpstreamImage implements Closeable {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final int statusCode;
+    private final HttpHeaders headers;
+    private final InputStream body;
+    private final long contentLength;
+    private final SharedDownload shared;
+    private CompletionListener listener;
+
+    UpstreamImage(int statusCode, HttpHeaders headers, InputStream body, SharedDownload shared) {
+        this.statusCode = statusCode;
+        this.headers = headers;
+        this.body = body;
+        this.contentLength = headers.firstValueAsLong("Content-Length").orElse(-1);
+        this.shared = shared;
+    }
+
+    /**
+     * Upstream status: 200, or 206/416 when a range was forwarded
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Content length announced by upstream, or -1 if unknown
+     */
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    /**
+     * Content-Type sent by upstream, or null
+     */
+    public String getContentType() {
+        return headers.firstValue("Content-Type").orElse(null);
+    }
+
+    /**
+     * Content-Range sent by upstream for partial responses, or null
+     */
+    public String getContentRange() {
+        return headers.firstValue("Content-Range").orElse(null);
+    }
+
+    /**
+     * Last-Modified header sent by upstream, or null
+     */
+    public String getLastModified() {
+        return headers.firstValue("Last-Modified").orElse(null);
+    }
+
+    /**
+     * True if upstream reports serving the image from its own cache (X-Cache: HIT)
+     */
+    boolean isUpstreamCacheHit() {
+        return headers.firstValue("X-Cache").map(value -> value.startsWith("HIT")).orElse(false);
+    }
+
+    /**
+     * Be told how the body transfer ended. Only called when upstream finished or
+     * failed, not when the client went away first.
+     */
+    void onComplete(CompletionListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Stream the body to the given output. If the client goes away while other
+     * requests are following this download, the body is still read to the end
+     * for them before the client error is rethrown.
+     *
+     * @throws UpstreamStreamException if reading from upstream fails or the body is truncated
+     * @throws IOException             if writing to the output fails
+     */
+    public void transferTo(OutputStream out) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        OutputStream target = out;
+        IOException clientFailure = null;
+        long transferred = 0;
+        boolean complete = false;
+        boolean upstreamFailed = false;
+
+        try {
+            while (true) {
+                int read;
+                try {
+                    read = body.read(buffer);
+                } catch (IOException e) {
+                    upstreamFailed = true;
+                    throw new UpstreamStreamException("Upstream image stream failed after "
+                            + transferred + " bytes", e);
+                }
+                if (read < 0) {
+                    break;
+                }
+
+                if (shared != null) {
+                    shared.append(buffer, 0, read);
+                }
+                if (target != null) {
+                    try {
+                        target.write(buffer, 0, read);
+                    } catch (IOException e) {
+                        if (shared == null || !shared.hasFollowers()) {
+                            throw e;
+                        }
+                        clientFailure = e;
+                        target = null;
+                    }
+                }
+                transferred += read;
+            }
+
+            if (contentLength >= 0 && transferred != contentLength) {
+                upstreamFailed = true;
+                throw new UpstreamStreamException("Upstream image truncated: received " + transferred
+                        + " of " + contentLength + " bytes", null);
+            }
+
+            if (target != null) {
+                target.flush();
+            }
+            complete = true;
+
+        } finally {
+            if (shared != null) {
+                if (complete) {
+                    shared.complete();
+                } else {
+                    shared.fail();
+                }
+            }
+            if (listener != null && (complete || upstreamFailed)) {
+                listener.completed(complete, transferred);
+            }
+        }
+
+        if (clientFailure != null) {
+            throw clientFailure;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            body.close();
+        } finally {
+            // No-op if the download already completed
+            if (shared != null) {
+                shared.fail();
+            }
+        }
+    }
+
+    /**
+     * Callback for the end of a body transfer
+     */
+    interface CompletionListener {
+        void completed(boolean success, long bytes);
+    }
+}
@@ -1,11 +1,20 @@
 package com.mangareader.util;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
 @Component
 public class MangaDexParser {
 
@@ -16,70 +25,17 @@ public class MangaDexParser {
     }
 
     /**
-     * Parse MangaDex manga search results
-     */
-    public ArrayNode parseMangaSearchResults(String jsonResponse) throws Exception {
-        JsonNode root = mapper.readTree(jsonResponse);
-        JsonNode dataArray = root.get("data");
-
-        ArrayNode results = mapper.createArrayNode();
-
-        if (dataArray != null && dataArray.isArray()) {
-            for (JsonNode manga : dataArray) {
-                ObjectNode simplified = createSimplifiedManga(manga);
-                results.add(simplified);
-            }
-        }
-
-        return results;
-    }
-
-    /**
-     * Parse a single manga detail response (with direct cover URL)
-     */
-    public ObjectNode parseMangaDetail(String mangaJson, String coverJson) throws Exception {
-        return parseMangaDetail(mangaJson, coverJson, null);
-    }
-
-    /**
-     * Parse a single manga detail response (with optional proxy)
+     * Parse an already-parsed manga detail "data" node. The cover is taken from the
+     * expanded cover_art relationship (includes[]=cover_art).
      */
-    public ObjectNode parseMangaDetail(String mangaJson, String coverJson, String proxyBaseUrl) throws Exception {
-        JsonNode mangaRoot = mapper.readTree(mangaJson);
-        JsonNode mangaData = mangaRoot.get("data");
-
-        ObjectNode result = createSimplifiedManga(mangaData);
-
-        // If we have cover data, update the cover URL
-        if (coverJson != null && !coverJson.isEmpty()) {
-            JsonNode coverRoot = mapper.readTree(coverJson);
-            JsonNode coverData = coverRoot.get("data");
-            if (coverData != null) {
-                String mangaId = getTextValue(mangaData, "id");
-                String coverFileName = getTextValue(coverData.get("attributes"), "fileName");
-                if (coverFileName != null && !coverFileName.isEmpty()) {
-                    String coverUrl;
-                    if (proxyBaseUrl != null && !proxyBaseUrl.isEmpty()) {
-                        // Use proxy URL
-                        coverUrl = String.format("%s/proxy/mangadex/cover/%s/%s",
-                                proxyBaseUrl, mangaId, coverFileName);
-                    } else {
-                        // Use direct URL
-                        coverUrl = String.format("https://uploads.mangadex.org/covers/%s/%s",
-                                mangaId, coverFileName);
-                    }
-                    result.put("cover", coverUrl);
-                }
-            }
-        }
-
-        return result;
+    public ObjectNode parseMangaDetail(JsonNode mangaData, String proxyBaseUrl) {
+        return createSimplifiedManga(mangaData, proxyBaseUrl);
     }
 
     /**
      * Create simplified manga object from MangaDex response
      */
-    private ObjectNode createSimplifiedManga(JsonNode mangaData) {
+    private ObjectNode createSimplifiedManga(JsonNode mangaData, String proxyBaseUrl) {
         ObjectNode result = mapper.createObjectNode();
 
         String id = getTextValue(mangaData, "id");
@@ -121,11 +77,10 @@ public class MangaDexParser {
             result.put("updatedAt", updatedAt != null ? updatedAt : "");
         }
 
-        // Get cover ID and build URL
-        String coverId = getCoverId(mangaData);
-        if (coverId != null && !coverId.isEmpty()) {
-            result.put("cover", ""); // Will be filled by separate cover request
-            result.put("coverId", coverId);
+        // Use the expanded cover (includes[]=cover_art) if present
+        String coverFileName = getCoverFileName(mangaData);
+        if (coverFileName != null && !coverFileName.isEmpty()) {
+            result.put("cover", buildCoverUrl(id, coverFileName, proxyBaseUrl));
         } else {
             result.put("cover", "");
         }
@@ -134,107 +89,341 @@ public class MangaDexParser {
     }
 
     /**
-     * Parse chapters feed
+     * Parse a chapters feed page straight from the response body, keeping only the
+     * fields of the simplified chapter; everything else is skipped unread
      */
-    public ArrayNode parseChapters(String jsonResponse) throws Exception {
-        JsonNode root = mapper.readTree(jsonResponse);
-        JsonNode dataArray = root.get("data");
-
+    public ChapterFeedPage parseChapterFeed(byte[] body) throws IOException {
         ArrayNode chapters = mapper.createArrayNode();
+        int total = 0;
+
+        try (JsonParser json = mapper.getFactory().createParser(body)) {
+            if (json.nextToken() == JsonToken.START_OBJECT) {
+                while (json.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = json.currentName();
+                    JsonToken value = json.nextToken();
+                    if ("data".equals(field) && value == JsonToken.START_ARRAY) {
+                        for (JsonToken item = json.nextToken(); item != JsonToken.END_ARRAY; item = json.nextToken()) {
+                            if (item == JsonToken.START_OBJECT) {
+                                chapters.add(readChapter(json));
+                            } else {
+                                json.skipChildren();
+                            }
+                        }
+                    } else if ("total".equals(field)) {
+                        total = json.getValueAsInt(0);
+                    } else {
+                        json.skipChildren();
+                    }
+                }
+            }
+        }
 
-        if (dataArray != null && dataArray.isArray()) {
-            for (JsonNode chapter : dataArray) {
-                ObjectNode chapterObj = mapper.createObjectNode();
+        return new ChapterFeedPage(chapters, total);
+    }
 
-                String id = getTextValue(chapter, "id");
-                chapterObj.put("id", id);
+    /**
+     * Parse MangaDex manga search results straight from the response body. The cover
+     * comes from the expanded cover_art relationship (includes[]=cover_art); fields
+     * that are not kept are skipped unread.
+     */
+    public ArrayNode parseMangaSearchResults(byte[] body, String proxyBaseUrl) throws IOException {
+        ArrayNode results = mapper.createArrayNode();
 
-                JsonNode attributes = chapter.get("attributes");
-                if (attributes != null) {
-                    String number = getTextValue(attributes, "chapter");
-                    String title = getTextValue(attributes, "title");
-                    String volume = getTextValue(attributes, "volume");
-                    String translatedLanguage = getTextValue(attributes, "translatedLanguage");
-                    String publishAt = getTextValue(attributes, "publishAt");
-                    String createdAt = getTextValue(attributes, "createdAt");
-                    String updatedAt = getTextValue(attributes, "updatedAt");
-
-                    chapterObj.put("chapter", number != null ? number : "");
-                    chapterObj.put("title", title != null ? title : "");
-                    chapterObj.put("volume", volume != null ? volume : "");
-                    chapterObj.put("translatedLanguage", translatedLanguage != null ? translatedLanguage : "");
-                    chapterObj.put("publishAt", publishAt != null ? publishAt : "");
-                    chapterObj.put("createdAt", createdAt != null ? createdAt : "");
-                    chapterObj.put("updatedAt", updatedAt != null ? updatedAt : "");
-
-                    // Get pages count
-                    JsonNode pages = attributes.get("pages");
-                    if (pages != null && !pages.isNull()) {
-                        chapterObj.put("pages", pages.asInt());
+        try (JsonParser json = mapper.getFactory().createParser(body)) {
+            if (json.nextToken() == JsonToken.START_OBJECT) {
+                while (json.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = json.currentName();
+                    JsonToken value = json.nextToken();
+                    if ("data".equals(field) && value == JsonToken.START_ARRAY) {
+                        for (JsonToken item = json.nextToken(); item != JsonToken.END_ARRAY; item = json.nextToken()) {
+                            if (item == JsonToken.START_OBJECT) {
+                                results.add(readManga(json, proxyBaseUrl));
+                            } else {
+                                json.skipChildren();
+                            }
+                        }
                     } else {
-                        chapterObj.put("pages", 0);
+                        json.skipChildren();
                     }
                 }
+            }
+        }
 
-                chapters.add(chapterObj);
+        return results;
+    }
+
+    /**
+     * Parse a manga detail response straight from the response body, with the cover
+     * from the expanded cover_art relationship. Returns null if it has no manga data.
+     */
+    public ObjectNode parseMangaDetail(byte[] body, String proxyBaseUrl) throws IOException {
+        ObjectNode result = null;
+
+        try (JsonParser json = mapper.getFactory().createParser(body)) {
+            if (json.nextToken() == JsonToken.START_OBJECT) {
+                while (json.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = json.currentName();
+                    JsonToken value = json.nextToken();
+                    if ("data".equals(field) && value == JsonToken.START_OBJECT) {
+                        result = readManga(json, proxyBaseUrl);
+                    } else {
+                        json.skipChildren();
+                    }
+                }
             }
         }
 
-        return chapters;
+        return result;
     }
 
     /**
-     * Parse chapter pages (at-home server response)
-     * Returns direct MangaDex URLs
+     * Read one chapter object (the parser is on its START_OBJECT)
      */
-    public ArrayNode parseChapterPages(String jsonResponse) throws Exception {
-        JsonNode root = mapper.readTree(jsonResponse);
+    private ObjectNode readChapter(JsonParser json) throws IOException {
+        // "id" goes first whatever order the fields arrive in
+        ObjectNode chapter = mapper.createObjectNode();
+        chapter.putNull("id");
+
+        while (json.nextToken() == JsonToken.FIELD_NAME) {
+            String field = json.currentName();
+            JsonToken value = json.nextToken();
+            if ("id".equals(field)) {
+                chapter.put("id", json.getValueAsString());
+            } else if ("attributes".equals(field) && value == JsonToken.START_OBJECT) {
+                readChapterAttributes(json, chapter);
+            } else {
+                json.skipChildren();
+            }
+        }
+        return chapter;
+    }
 
-        String baseUrl = getTextValue(root, "baseUrl");
-        JsonNode chapter = root.get("chapter");
+    private void readChapterAttributes(JsonParser json, ObjectNode chapter) throws IOException {
+        String number = "";
+        String title = "";
+        String volume = "";
+        String translatedLanguage = "";
+        String publishAt = "";
+        String createdAt = "";
+        String updatedAt = "";
+        int pages = 0;
+
+        while (json.nextToken() == JsonToken.FIELD_NAME) {
+            String field = json.currentName();
+            json.nextToken();
+            switch (field) {
+                case "chapter" -> number = json.getValueAsString("");
+                case "title" -> title = json.getValueAsString("");
+                case "volume" -> volume = json.getValueAsString("");
+                case "translatedLanguage" -> translatedLanguage = json.getValueAsString("");
+                case "publishAt" -> publishAt = json.getValueAsString("");
+                case "createdAt" -> createdAt = json.getValueAsString("");
+                case "updatedAt" -> updatedAt = json.getValueAsString("");
+                case "pages" -> pages = json.getValueAsInt(0);
+                default -> json.skipChildren();
+            }
+        }
 
-        ArrayNode pages = mapper.createArrayNode();
+        chapter.put("chapter", number);
+        chapter.put("title", title);
+        chapter.put("volume", volume);
+        chapter.put("translatedLanguage", translatedLanguage);
+        chapter.put("publishAt", publishAt);
+        chapter.put("createdAt", createdAt);
+        chapter.put("updatedAt", updatedAt);
+        chapter.put("pages", pages);
+    }
 
-        if (chapter != null && baseUrl != null) {
-            String hash = getTextValue(chapter, "hash");
-            JsonNode dataArray = chapter.get("data");
+    /**
+     * Read one manga object (the parser is on its START_OBJECT) into the same shape as
+     * {@link #parseMangaDetail(JsonNode, String)}
+     */
+    private ObjectNode readManga(JsonParser json, String proxyBaseUrl) throws IOException {
+        // "id" goes first whatever order the fields arrive in
+        ObjectNode result = mapper.createObjectNode();
+        result.putNull("id");
+        String id = null;
+        String coverFileName = null;
+
+        while (json.nextToken() == JsonToken.FIELD_NAME) {
+            String field = json.currentName();
+            JsonToken value = json.nextToken();
+            if ("id".equals(field)) {
+                id = json.getValueAsString();
+                result.put("id", id);
+            } else if ("attributes".equals(field) && value == JsonToken.START_OBJECT) {
+                readMangaAttributes(json, result);
+            } else if ("relationships".equals(field) && value == JsonToken.START_ARRAY) {
+                coverFileName = readCoverFileName(json);
+            } else {
+                json.skipChildren();
+            }
+        }
 
-            if (dataArray != null && dataArray.isArray() && hash != null) {
-                for (JsonNode filename : dataArray) {
-                    String pageUrl = String.format("%s/data/%s/%s",
-                            baseUrl, hash, filename.asText());
-                    pages.add(pageUrl);
-                }
+        result.put("cover", coverFileName != null && !coverFileName.isEmpty()
+                ? buildCoverUrl(id, coverFileName, proxyBaseUrl)
+                : "");
+        return result;
+    }
+
+    private void readMangaAttributes(JsonParser json, ObjectNode manga) throws IOException {
+        String title = "";
+        String description = "";
+        ArrayNode tags = mapper.createArrayNode();
+        String status = "";
+        Integer year = null;
+        String contentRating = "";
+        String createdAt = "";
+        String updatedAt = "";
+
+        while (json.nextToken() == JsonToken.FIELD_NAME) {
+            String field = json.currentName();
+            JsonToken value = json.nextToken();
+            switch (field) {
+                case "title" -> title = readLocalized(json, true);
+                case "description" -> description = readLocalized(json, false);
+                case "tags" -> readTagNames(json, tags);
+                case "status" -> status = json.getValueAsString("");
+                case "year" -> year = value == JsonToken.VALUE_NULL ? null : json.getValueAsInt();
+                case "contentRating" -> contentRating = json.getValueAsString("");
+                case "createdAt" -> createdAt = json.getValueAsString("");
+                case "updatedAt" -> updatedAt = json.getValueAsString("");
+                default -> json.skipChildren();
             }
         }
 
-        return pages;
+        manga.put("title", title);
+        manga.put("description", description);
+        manga.set("tags", tags);
+        manga.put("status", status);
+        if (year != null) {
+            manga.put("year", year);
+        }
+        manga.put("contentRating", contentRating);
+        manga.put("createdAt", createdAt);
+        manga.put("updatedAt", updatedAt);
     }
 
     /**
-     * Parse chapter pages with proxy URLs
-     * Returns filenames that should be used with the proxy endpoint
+     * Read a localized string map, preferring English, then (for titles) Japanese
+     * romaji, then the first language present
      */
-    public ArrayNode parseChapterPagesWithProxy(String jsonResponse, String chapterId, String proxyBaseUrl)
-            throws Exception {
-        JsonNode root = mapper.readTree(jsonResponse);
-        JsonNode chapter = root.get("chapter");
+    private String readLocalized(JsonParser json, boolean romajiFallback) throws IOException {
+        if (json.currentToken() != JsonToken.START_OBJECT) {
+            json.skipChildren();
+            return "";
+        }
 
-        ArrayNode pages = mapper.createArrayNode();
+        String english = null;
+        String romaji = null;
+        String first = null;
+        while (json.nextToken() == JsonToken.FIELD_NAME) {
+            String language = json.currentName();
+            json.nextToken();
+            String text = json.getValueAsString("");
+            if (first == null) {
+                first = text;
+            }
+            if ("en".equals(language)) {
+                english = text;
+            } else if (romajiFallback && "ja-ro".equals(language)) {
+                romaji = text;
+            }
+        }
 
-        if (chapter != null) {
-            JsonNode dataArray = chapter.get("data");
+        if (english != null) {
+            return english;
+        }
+        if (romaji != null) {
+            return romaji;
+        }
+        return first != null ? first : "";
+    }
+
+    /**
+     * Add the English name of each tag (tags[].attributes.name.en)
+     */
+    private void readTagNames(JsonParser json, ArrayNode tags) throws IOException {
+        if (json.currentToken() != JsonToken.START_ARRAY) {
+            json.skipChildren();
+            return;
+        }
 
-            if (dataArray != null && dataArray.isArray()) {
-                for (JsonNode filename : dataArray) {
-                    String proxyUrl = String.format("%s/proxy/mangadex/%s/%s",
-                            proxyBaseUrl, chapterId, filename.asText());
-                    pages.add(proxyUrl);
+        for (JsonToken tag = json.nextToken(); tag != JsonToken.END_ARRAY; tag = json.nextToken()) {
+            if (tag != JsonToken.START_OBJECT) {
+                json.skipChildren();
+                continue;
+            }
+            while (json.nextToken() == JsonToken.FIELD_NAME) {
+                String field = json.currentName();
+                JsonToken value = json.nextToken();
+                if (!"attributes".equals(field) || value != JsonToken.START_OBJECT) {
+                    json.skipChildren();
+                    continue;
+                }
+                while (json.nextToken() == JsonToken.FIELD_NAME) {
+                    String attribute = json.currentName();
+                    JsonToken names = json.nextToken();
+                    if (!"name".equals(attribute) || names != JsonToken.START_OBJECT) {
+                        json.skipChildren();
+                        continue;
+                    }
+                    while (json.nextToken() == JsonToken.FIELD_NAME) {
+                        String language = json.currentName();
+                        json.nextToken();
+                        if ("en".equals(language)) {
+                            tags.add(json.getValueAsString(""));
+                        } else {
+                            json.skipChildren();
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * File name of the first cover_art relationship, if it was expanded
+     */
+    private String readCoverFileName(JsonParser json) throws IOException {
+        String coverFileName = null;
+        boolean found = false;
+
+        for (JsonToken item = json.nextToken(); item != JsonToken.END_ARRAY; item = json.nextToken()) {
+            if (item != JsonToken.START_OBJECT || found) {
+                json.skipChildren();
+                continue;
+            }
+
+            String type = null;
+            String fileName = null;
+            while (json.nextToken() == JsonToken.FIELD_NAME) {
+                String field = json.currentName();
+                JsonToken value = json.nextToken();
+                if ("type".equals(field)) {
+                    type = json.getValueAsString();
+                } else if ("attributes".equals(field) && value == JsonToken.START_OBJECT) {
+                    while (json.nextToken() == JsonToken.FIELD_NAME) {
+                        String attribute = json.currentName();
+                        json.nextToken();
+                        if ("fileName".equals(attribute)) {
+                            fileName = json.getValueAsString();
+                        } else {
+                            json.skipChildren();
+                        }
+                    }
+                } else {
+                    json.skipChildren();
                 }
             }
+
+            if ("cover_art".equals(type)) {
+                coverFileName = fileName;
+                found = true;
+            }
         }
 
-        return pages;
+        return coverFileName;
     }
 
     /**
@@ -255,11 +444,35 @@ public class MangaDexParser {
         }
 
         // Fall back to first available
-        if (titleNode.fields().hasNext()) {
-            return titleNode.fields().next().getValue().asText();
+        Iterator<JsonNode> values = titleNode.elements();
+        return values.hasNext() ? values.next().asText() : "";
+    }
+
+    /**
+     * Every title of a manga: the main title in all languages plus the alternative
+     * titles, without duplicates
+     */
+    public List<String> getAllTitles(JsonNode mangaData) {
+        Set<String> titles = new LinkedHashSet<>();
+        JsonNode attributes = mangaData.get("attributes");
+        if (attributes == null) {
+            return new ArrayList<>(titles);
         }
 
-        return "";
+        JsonNode title = attributes.get("title");
+        if (title != null) {
+            title.elements().forEachRemaining(value -> titles.add(value.asText()));
+        }
+
+        JsonNode altTitles = attributes.get("altTitles");
+        if (altTitles != null && altTitles.isArray()) {
+            for (JsonNode altTitle : altTitles) {
+                altTitle.elements().forEachRemaining(value -> titles.add(value.asText()));
+            }
+        }
+
+        titles.remove("");
+        return new ArrayList<>(titles);
     }
 
     /**
@@ -274,11 +487,8 @@ public class MangaDexParser {
         }
 
         // Fall back to first available
-        if (descNode.fields().hasNext()) {
-            return descNode.fields().next().getValue().asText();
-        }
-
-        return "";
+        Iterator<JsonNode> values = descNode.elements();
+        return values.hasNext() ? values.next().asText() : "";
     }
 
     /**
@@ -303,16 +513,15 @@ public class MangaDexParser {
     }
 
     /**
-     * Get cover ID from relationships
+     * Get cover filename from an expanded cover_art relationship
      */
-    private String getCoverId(JsonNode mangaData) {
+    private String getCoverFileName(JsonNode mangaData) {
         JsonNode relationships = mangaData.get("relationships");
 
         if (relationships != null && relationships.isArray()) {
             for (JsonNode rel : relationships) {
-                String type = getTextValue(rel, "type");
-                if ("cover_art".equals(type)) {
-                    return getTextValue(rel, "id");
+                if ("cover_art".equals(getTextValue(rel, "type"))) {
+                    return getTextValue(rel.get("attributes"), "fileName");
                 }
             }
         }
@@ -320,6 +529,18 @@ public class MangaDexParser {
         return null;
     }
 
+    /**
+     * Build a cover URL, through the proxy when a proxy base URL is given
+     */
+    private String buildCoverUrl(String mangaId, String coverFileName, String proxyBaseUrl) {
+        if (proxyBaseUrl != null && !proxyBaseUrl.isEmpty()) {
+            // Use proxy URL
+            return String.format("%s/proxy/mangadex/cover/%s/%s", proxyBaseUrl, mangaId, coverFileName);
+        }
+        // Use direct URL
+        return String.format("https://uploads.mangadex.org/covers/%s/%s", mangaId, coverFileName);
+    }
+
     /**
      * Safely get text value from JSON node
      */
@@ -329,4 +550,25 @@ public class MangaDexParser {
         JsonNode field = node.get(fieldName);
         return field != null ? field.asText() : null;
     }
+
+    /**
+     * One page of a chapters feed: the simplified chapters and the feed's total
+     */
+    public static class ChapterFeedPage {
+        private final ArrayNode chapters;
+        private final int total;
+
+        ChapterFeedPage(ArrayNode chapters, int total) {
+            this.chapters = chapters;
+            this.total = total;
+        }
+
+        public ArrayNode getChapters() {
+            return chapters;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+    }
 }
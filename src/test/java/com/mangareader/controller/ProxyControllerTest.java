@@ -0,0 +1,59 @@
+package com.mangareader.controller;
+
+import com.mangareader.exception.UpstreamStreamException;
+import com.mangareader.service.ImageProxyService;
+import com.mangareader.service.UpstreamImage;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ProxyControllerTest {
+
+    private final ImageProxyService imageProxyService = mock(ImageProxyService.class);
+    private final ProxyController controller = new ProxyController(imageProxyService);
+
+    @Test
+    void upstreamFailureBeforeAnyByteIsAPlain502() throws IOException {
+        UpstreamImage image = mock(UpstreamImage.class);
+        when(image.getStatusCode()).thenReturn(HttpStatus.PARTIAL_CONTENT.value());
+        when(image.getContentRange()).thenReturn("bytes 0-9/100");
+        when(image.getContentType()).thenReturn("image/png");
+        when(image.getContentLength()).thenReturn(10L);
+        doThrow(new UpstreamStreamException("Connection reset", null)).when(image).transferTo(any());
+
+        when(imageProxyService.getImageETag("ch", "1.png", false)).thenReturn("\"p-h-data-1.png\"");
+        when(imageProxyService.openImage(anyString(), anyString(), anyBoolean(), any())).thenReturn(image);
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/proxy/mangadex/ch/1.png");
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-9");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        // As set by the CORS processor before the handler runs
+        response.addHeader(HttpHeaders.VARY, "Origin");
+        response.addHeader(HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN, "*");
+
+        ResponseEntity<?> result = controller.proxyImage("ch", "1.png", false, request, response);
+
+        assertThat(result.getStatusCode()).isEqualTo(HttpStatus.BAD_GATEWAY);
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isNull();
+        assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isNull();
+        assertThat(response.getHeader(HttpHeaders.ACCEPT_RANGES)).isNull();
+        assertThat(response.getContentType()).isNull();
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(response.getHeader(HttpHeaders.CACHE_CONTROL)).isEqualTo("no-store");
+        assertThat(response.getHeader(HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN)).isEqualTo("*");
+        assertThat(response.getHeaders(HttpHeaders.VARY)).containsExactly("Origin");
+    }
+}
@@ -0,0 +1,31 @@
+package com.mangareader.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AtHomeDataTest {
+
+    private final AtHomeData data = new AtHomeData("https://node", "hash",
+            new String[] { "1.png", "2.png", "3.png" }, new String[] { "1.jpg", "2.jpg" });
+
+    @Test
+    void indexesFilenamesByPosition() {
+        assertThat(data.getPosition("2.png", false)).isEqualTo(1);
+        assertThat(data.getPosition("2.jpg", true)).isEqualTo(1);
+        assertThat(data.getPosition("2.jpg", false)).isEqualTo(-1);
+        assertThat(data.getFilename(2, false)).isEqualTo("3.png");
+        assertThat(data.getFilename(2, true)).isNull();
+    }
+
+    @Test
+    void callersCannotChangeTheSharedFilenames() {
+        assertThat(data.getFiles(false)).containsExactly("1.png", "2.png", "3.png");
+        assertThatThrownBy(() -> data.getFiles(false).set(0, "evil.png"))
+                .isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> data.getFiles(true).clear())
+                .isInstanceOf(UnsupportedOperationException.class);
+        assertThat(data.getFilename(0, false)).isEqualTo("1.png");
+    }
+}
@@ -0,0 +1,54 @@
+package com.mangareader.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Times CatalogueIndex on a synthetic catalogue. Not run by the build; after
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/classpath.txt run
+ * java -cp target/classes:target/test-classes:$(cat target/classpath.txt)
+ * com.mangareader.service.CatalogueIndexBenchmark [catalogue size]
+ */
+final class CatalogueIndexBenchmark {
+
+    private static final String[] QUERIES = {
+            "ka", "kari", "karito su", "karitosu", "kqritosu", "shidora gonha", "me", "mirosa", "dragon"};
+    private static final int WARMUP_ROUNDS = 3000;
+    private static final int SAMPLES = 1000;
+
+    private CatalogueIndexBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        ObjectMapper mapper = new ObjectMapper();
+        List<CatalogueIndex.Document> documents = new ArrayList<>(size);
+        for (SyntheticCatalogue.Manga manga : SyntheticCatalogue.generate(size, 1)) {
+            documents.add(SyntheticCatalogue.toDocument(mapper, manga));
+        }
+
+        CatalogueIndex index = new CatalogueIndex(mapper, 10);
+        long start = System.nanoTime();
+        index.replace(documents);
+        System.out.printf("%d manga, %d terms, built in %.0f ms%n",
+                size, index.termCount(), (System.nanoTime() - start) / 1e6);
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            index.search(QUERIES[i % QUERIES.length]);
+        }
+        for (String query : QUERIES) {
+            long[] times = new long[SAMPLES];
+            for (int i = 0; i < SAMPLES; i++) {
+                long before = System.nanoTime();
+                index.search(query);
+                times[i] = System.nanoTime() - before;
+            }
+            Arrays.sort(times);
+            System.out.printf("%-15s p50 %7.3f ms  p99 %7.3f ms  %2d results%n", query,
+                    times[SAMPLES / 2] / 1e6, times[SAMPLES * 99 / 100] / 1e6, index.search(query).size());
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.mangareader.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CatalogueIndexTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final CatalogueIndex index = new CatalogueIndex(mapper, 10);
+
+    @BeforeEach
+    void buildIndex() {
+        index.replace(List.of(
+                document("naruto", "Naruto", 500, 1999, "Action"),
+                document("one-piece", "One Piece", 100, 1997, "Adventure"),
+                document("onepunch", "Onepunch-Man", 900, 2012, "Action"),
+                document("dragon-ball", "Dragon Ball", 50, 1984, "Action"),
+                document("dragon-quest", "Dragon Quest", 80, 1989, "Fantasy"),
+                document("pokemon", "Pokémon Adventures", 70, 1997, "Adventure"),
+                document("attack", "Shingeki no Kyojin", 300, 2009, "Drama", "Attack on Titan"),
+                document("eight", "Alpha Bravo Charlie Delta Echo Foxtrot Golf Hotel", 1, 2000, "Comedy")));
+    }
+
+    @Test
+    void findsExactTitleWords() {
+        assertThat(ids("naruto")).containsExactly("naruto");
+        assertThat(ids("NARUTO")).containsExactly("naruto");
+        assertThat(ids("kyojin")).containsExactly("attack");
+    }
+
+    @Test
+    void findsAlternativeTitlesTagsAndYears() {
+        assertThat(ids("titan")).containsExactly("attack");
+        assertThat(ids("fantasy")).containsExactly("dragon-quest");
+        assertThat(ids("2012")).containsExactly("onepunch");
+    }
+
+    @Test
+    void ignoresCaseAndAccents() {
+        assertThat(ids("pokemon")).containsExactly("pokemon");
+        assertThat(ids("POKÉMON")).containsExactly("pokemon");
+    }
+
+    @Test
+    void exactMatchesComeBeforePrefixMatches() {
+        // "one" is a whole word of One Piece but only a prefix of the more followed Onepunch
+        assertThat(ids("one")).containsExactly("one-piece", "onepunch");
+    }
+
+    @Test
+    void matchesPrefixesOfTwoOrMoreCharacters() {
+        assertThat(ids("nar")).containsExactly("naruto");
+        assertThat(ids("shing")).containsExactly("attack");
+        assertThat(ids("n")).isEmpty();
+    }
+
+    @Test
+    void equalMatchesAreOrderedByFollowers() {
+        assertThat(ids("dragon")).containsExactly("dragon-quest", "dragon-ball");
+        assertThat(ids("action")).containsExactly("onepunch", "naruto", "dragon-ball");
+    }
+
+    @Test
+    void everyQueryWordHasToMatchAndTheLastMayBeIncomplete() {
+        assertThat(ids("dragon ball")).containsExactly("dragon-ball");
+        assertThat(ids("ball dragon")).containsExactly("dragon-ball");
+        assertThat(ids("dragon qu")).containsExactly("dragon-quest");
+        assertThat(ids("dragon piece")).isEmpty();
+    }
+
+    @Test
+    void toleratesOneTypoInWordsOfFourOrMoreCharacters() {
+        assertThat(ids("narito")).containsExactly("naruto");
+        assertThat(ids("nruto")).containsExactly("naruto");
+        assertThat(ids("narutoo")).containsExactly("naruto");
+        assertThat(ids("dragin ball")).containsExactly("dragon-ball");
+    }
+
+    @Test
+    void toleratesTwoTyposInWordsOfEightOrMoreCharacters() {
+        // Two edits from "adventures"; the "adventure" tag is three away
+        assertThat(ids("advantyres")).containsExactly("pokemon");
+        assertThat(ids("shimgeka")).containsExactly("attack");
+        assertThat(ids("nerito")).isEmpty();
+    }
+
+    @Test
+    void typoMatchesAgreeWithABruteForceScan() {
+        List<SyntheticCatalogue.Manga> catalogue = SyntheticCatalogue.generate(2000, 7);
+        List<CatalogueIndex.Document> documents = new ArrayList<>();
+        Map<String, Set<String>> termsById = new HashMap<>();
+        Set<String> allTerms = new TreeSet<>();
+        for (SyntheticCatalogue.Manga manga : catalogue) {
+            documents.add(SyntheticCatalogue.toDocument(mapper, manga));
+            Set<String> terms = new HashSet<>();
+            manga.titles.forEach(title -> terms.addAll(CatalogueIndex.normalize(title)));
+            termsById.put(manga.id, terms);
+            allTerms.addAll(terms);
+        }
+        index.replace(documents);
+
+        List<String> termList = new ArrayList<>(allTerms);
+        Random random = new Random(11);
+        int checked = 0;
+        while (checked < 200) {
+            String query = typo(termList.get(random.nextInt(termList.size())), random);
+            if (query.length() < 4 || allTerms.stream().anyMatch(term -> term.startsWith(query))) {
+                // Exact and prefix matches take precedence over typos
+                continue;
+            }
+            int maxEdits = query.length() >= 8 ? 2 : 1;
+
+            List<SyntheticCatalogue.Manga> expected = new ArrayList<>();
+            for (SyntheticCatalogue.Manga manga : catalogue) {
+                if (termsById.get(manga.id).stream().anyMatch(term -> term.charAt(0) == query.charAt(0)
+                        && levenshtein(term, query) <= maxEdits)) {
+                    expected.add(manga);
+                }
+            }
+            expected.sort(Comparator.comparingInt((SyntheticCatalogue.Manga manga) -> -manga.followers)
+                    .thenComparing(manga -> manga.id));
+
+            assertThat(ids(query)).as(query)
+                    .containsExactlyElementsOf(expected.stream().limit(10).map(manga -> manga.id).toList());
+            checked++;
+        }
+    }
+
+    @Test
+    void typosNeverChangeTheFirstLetterOrApplyToShortWords() {
+        assertThat(ids("maruto")).isEmpty();
+        assertThat(ids("onf")).isEmpty();
+    }
+
+    @Test
+    void resultsCarryTheDocumentedFieldsOnly() {
+        JsonNode result = index.search("naruto").get(0);
+
+        List<String> fields = new ArrayList<>();
+        result.fieldNames().forEachRemaining(fields::add);
+        assertThat(fields).containsExactly("id", "title", "tags", "status", "year", "cover", "followers");
+        assertThat(result.path("followers").asInt()).isEqualTo(500);
+    }
+
+    @Test
+    void emptyQueriesFindNothing() {
+        assertThat(ids("")).isEmpty();
+        assertThat(ids("   ")).isEmpty();
+        assertThat(ids("?!-")).isEmpty();
+        assertThat(ids(null)).isEmpty();
+    }
+
+    @Test
+    void overLongQueriesAreCutOrFindNothing() {
+        // Words beyond the eighth are ignored
+        assertThat(ids("alpha bravo charlie delta echo foxtrot golf hotel india juliet kilo"))
+                .containsExactly("eight");
+        assertThat(ids("n".repeat(500))).isEmpty();
+        assertThat(ids("naruto".repeat(50))).isEmpty();
+    }
+
+    @Test
+    void limitsResultsToTheMostFollowed() {
+        List<CatalogueIndex.Document> catalogue = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            catalogue.add(document("m" + i, "Common Title " + i, i, 2000, "Action"));
+        }
+        index.replace(catalogue);
+
+        assertThat(ids("common")).containsExactly("m24", "m23", "m22", "m21", "m20", "m19", "m18", "m17",
+                "m16", "m15");
+        assertThat(ids("naruto")).isEmpty();
+    }
+
+    @Test
+    void resultsLookLikeSearchResults() {
+        JsonNode result = index.search("naruto").get(0);
+
+        assertThat(result.path("title").asText()).isEqualTo("Naruto");
+        assertThat(result.path("followers").asInt()).isEqualTo(500);
+        assertThat(result.path("year").asInt()).isEqualTo(1999);
+        assertThat(result.path("tags").get(0).asText()).isEqualTo("Action");
+        assertThat(result.has("description")).isFalse();
+    }
+
+    /**
+     * The term with one or two random characters after the first substituted or deleted
+     */
+    private static String typo(String term, Random random) {
+        StringBuilder result = new StringBuilder(term);
+        int edits = 1 + random.nextInt(2);
+        for (int e = 0; e < edits && result.length() > 1; e++) {
+            int position = 1 + random.nextInt(result.length() - 1);
+            if (random.nextBoolean()) {
+                result.setCharAt(position, (char) ('a' + random.nextInt(26)));
+            } else {
+                result.deleteCharAt(position);
+            }
+        }
+        return result.toString();
+    }
+
+    private static int levenshtein(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    private List<String> ids(String query) {
+        ArrayNode results = index.search(query);
+        List<String> ids = new ArrayList<>();
+        results.forEach(result -> ids.add(result.path("id").asText()));
+        return ids;
+    }
+
+    private CatalogueIndex.Document document(String id, String title, int followers, int year, String tag,
+            String... altTitles) {
+        ObjectNode manga = mapper.createObjectNode();
+        manga.put("id", id);
+        manga.put("title", title);
+        manga.put("status", "ongoing");
+        manga.put("year", year);
+        manga.putArray("tags").add(tag);
+        manga.put("cover", "cover-" + id);
+
+        List<String> titles = new ArrayList<>(List.of(title));
+        titles.addAll(List.of(altTitles));
+        return new CatalogueIndex.Document(manga, titles, followers);
+    }
+}
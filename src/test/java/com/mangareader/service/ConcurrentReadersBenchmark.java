@@ -0,0 +1,128 @@
+package com.mangareader.service;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Finds how many readers a running server sustains at once. Each reader proxies one
+ * page of its own chapter, so every request does an at-home lookup and an image
+ * download upstream and nothing is served from the caches. Readers start together at
+ * each level; the highest level with no failed request and a p99 within the budget is
+ * the sustainable one. Run it once against a server with APP_VIRTUAL_THREADS=false and
+ * once with true (on Java 21), with the at-home rate limit lifted so that it does not
+ * cap the result first. Not run by the build; after
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/classpath.txt run
+ * java -cp target/classes:target/test-classes:$(cat target/classpath.txt)
+ * com.mangareader.service.ConcurrentReadersBenchmark [base URL] [levels] [p99 budget ms]
+ */
+final class ConcurrentReadersBenchmark {
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(60);
+
+    private ConcurrentReadersBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+        int[] levels = Arrays.stream((args.length > 1 ? args[1] : "50,100,200,400,800").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        long budgetMs = args.length > 2 ? Long.parseLong(args[2]) : 5000;
+
+        HttpClient client = HttpClient.newBuilder().connectTimeout(REQUEST_TIMEOUT).build();
+        // Each round reads chapters no earlier round has cached
+        String run = Long.toString(System.currentTimeMillis(), 36);
+
+        // Untimed, so connection setup and JIT warm-up do not land on the first level
+        runRound(client, baseUrl + "/proxy/mangadex/bench-" + run + "-warmup-", levels[0]);
+
+        int sustained = 0;
+        for (int level : levels) {
+            Round round = runRound(client, baseUrl + "/proxy/mangadex/bench-" + run + "-" + level + "-", level);
+            boolean ok = round.failures == 0 && round.p99Ms() <= budgetMs;
+            System.out.printf("%5d readers  p50 %6d ms  p99 %6d ms  max %6d ms  failed %4d  wall %6d ms  %s%n",
+                    level, round.p50Ms(), round.p99Ms(), round.maxMs(), round.failures, round.wallMs,
+                    ok ? "ok" : "over budget");
+            if (!ok) {
+                break;
+            }
+            sustained = level;
+        }
+        System.out.printf("Sustained %d concurrent readers (p99 budget %d ms)%n", sustained, budgetMs);
+    }
+
+    private static Round runRound(HttpClient client, String chapterUrl, int readers) throws InterruptedException {
+        long[] latencies = new long[readers];
+        AtomicInteger failures = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(readers);
+        ExecutorService pool = Executors.newFixedThreadPool(readers);
+
+        for (int i = 0; i < readers; i++) {
+            int reader = i;
+            HttpRequest request = HttpRequest.newBuilder(URI.create(chapterUrl + reader + "/1.png"))
+                    .timeout(REQUEST_TIMEOUT)
+                    .GET()
+                    .build();
+            pool.execute(() -> {
+                try {
+                    start.await();
+                    long before = System.nanoTime();
+                    HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                    latencies[reader] = System.nanoTime() - before;
+                    if (response.statusCode() != 200) {
+                        failures.incrementAndGet();
+                    }
+                } catch (Exception e) {
+                    latencies[reader] = REQUEST_TIMEOUT.toNanos();
+                    failures.incrementAndGet();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+
+        long before = System.nanoTime();
+        start.countDown();
+        done.await();
+        long wallMs = (System.nanoTime() - before) / 1000000;
+        pool.shutdown();
+
+        Arrays.sort(latencies);
+        return new Round(latencies, failures.get(), wallMs);
+    }
+
+    /**
+     * Sorted latencies (ns), failed requests and wall time of one level
+     */
+    private static final class Round {
+        final long[] latencies;
+        final int failures;
+        final long wallMs;
+
+        Round(long[] latencies, int failures, long wallMs) {
+            this.latencies = latencies;
+            this.failures = failures;
+            this.wallMs = wallMs;
+        }
+
+        long p50Ms() {
+            return latencies[latencies.length / 2] / 1000000;
+        }
+
+        long p99Ms() {
+            return latencies[Math.min(latencies.length - 1, latencies.length * 99 / 100)] / 1000000;
+        }
+
+        long maxMs() {
+            return latencies[latencies.length - 1] / 1000000;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.mangareader.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImageDiskCacheTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void anOpenedHitSurvivesItsEviction() throws Exception {
+        ImageDiskCache cache = new ImageDiskCache(true, directory.toString(), 1);
+        cache.init();
+        byte[] first = image((byte) 1);
+        put(cache, "page/a", first);
+
+        try (ImageDiskCache.CachedImage cached = cache.get("page/a")) {
+            // A second entry pushes the cache over 1 MB and evicts the first
+            put(cache, "page/b", image((byte) 2));
+            assertThat(cache.get("page/a")).isNull();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            cached.transferTo(0, cached.getSize(), out);
+            assertThat(out.toByteArray()).isEqualTo(first);
+        }
+    }
+
+    @Test
+    void servesByteRangesOfAHit() throws Exception {
+        ImageDiskCache cache = new ImageDiskCache(true, directory.toString(), 1);
+        cache.init();
+        put(cache, "cover/m/c.jpg", "0123456789".getBytes());
+
+        try (ImageDiskCache.CachedImage cached = cache.get("cover/m/c.jpg")) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            cached.transferTo(3, 4, out);
+            assertThat(out.toString()).isEqualTo("3456");
+            assertThat(cached.getSize()).isEqualTo(10);
+        }
+        assertThat(cache.get("cover/m/other.jpg")).isNull();
+    }
+
+    private static byte[] image(byte value) {
+        byte[] bytes = new byte[700 * 1024];
+        Arrays.fill(bytes, value);
+        return bytes;
+    }
+
+    private static void put(ImageDiskCache cache, String key, byte[] bytes) {
+        ImageDiskCache.Writer writer = cache.openWriter(key);
+        writer.write(bytes, 0, bytes.length);
+        writer.commit();
+    }
+}
@@ -0,0 +1,221 @@
+package com.mangareader.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mangareader.util.MangaDexParser;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Measures the bytes allocated and the time per parse of MangaDexParser's streaming
+ * parsers against the JsonNode tree path on synthetic MangaDex responses. Not run by
+ * the build; after
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/classpath.txt run
+ * java -cp target/classes:target/test-classes:$(cat target/classpath.txt)
+ * com.mangareader.service.MangaDexParserBenchmark
+ */
+final class MangaDexParserBenchmark {
+
+    private static final String PROXY = "http://localhost:8080";
+    private static final int WARMUP_ROUNDS = 2000;
+    private static final int ROUNDS = 500;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final MangaDexParser PARSER = new MangaDexParser(MAPPER);
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private MangaDexParserBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(1);
+
+        byte[] feed = response(random, 500, false);
+        measure("feed page, 500 chapters", feed,
+                body -> PARSER.parseChapterFeed(body),
+                // The tree variant is gone; building the tree alone is its lower bound
+                body -> MAPPER.readTree(body));
+
+        byte[] search = response(random, 100, true);
+        Parse streamingSearch = body -> PARSER.parseMangaSearchResults(body, PROXY);
+        Parse treeSearch = body -> {
+            ArrayNode results = MAPPER.createArrayNode();
+            for (JsonNode manga : MAPPER.readTree(body).path("data")) {
+                results.add(PARSER.parseMangaDetail(manga, PROXY));
+            }
+            return results;
+        };
+        checkSameOutput("search", search, streamingSearch, treeSearch);
+        measure("search, 100 manga", search, streamingSearch, treeSearch);
+
+        ObjectNode detailResponse = MAPPER.createObjectNode();
+        detailResponse.put("result", "ok");
+        detailResponse.set("data", manga(random));
+        byte[] detail = MAPPER.writeValueAsBytes(detailResponse);
+        Parse streamingDetail = body -> PARSER.parseMangaDetail(body, PROXY);
+        Parse treeDetail = body -> PARSER.parseMangaDetail(MAPPER.readTree(body).path("data"), PROXY);
+        checkSameOutput("detail", detail, streamingDetail, treeDetail);
+        measure("manga detail", detail, streamingDetail, treeDetail);
+    }
+
+    /**
+     * Both parsers must produce the same simplified objects for the comparison to mean anything
+     */
+    private static void checkSameOutput(String name, byte[] body, Parse streaming, Parse tree) throws Exception {
+        if (!streaming.parse(body).equals(tree.parse(body))) {
+            throw new IllegalStateException(name + ": streaming and tree output differ");
+        }
+    }
+
+    private static void measure(String name, byte[] body, Parse streaming, Parse tree) throws Exception {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            streaming.parse(body);
+            tree.parse(body);
+        }
+        System.out.printf("%-24s %4d KB   streaming %s   tree %s%n", name, body.length / 1024,
+                run(streaming, body), run(tree, body));
+    }
+
+    private static String run(Parse parse, byte[] body) throws Exception {
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = THREADS.getThreadAllocatedBytes(threadId);
+        long before = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            parse.parse(body);
+        }
+        long nanos = System.nanoTime() - before;
+        long allocated = THREADS.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        return String.format("%6d KB %7.1f us", allocated / ROUNDS / 1024, nanos / 1e3 / ROUNDS);
+    }
+
+    private interface Parse {
+        Object parse(byte[] body) throws Exception;
+    }
+
+    /**
+     * A list response with count manga or chapters, shaped like MangaDex's
+     */
+    private static byte[] response(Random random, int count, boolean manga) throws Exception {
+        ObjectNode response = MAPPER.createObjectNode();
+        response.put("result", "ok");
+        response.put("response", "collection");
+        ArrayNode data = response.putArray("data");
+        for (int i = 0; i < count; i++) {
+            data.add(manga ? manga(random) : chapter(random, i));
+        }
+        response.put("limit", count);
+        response.put("offset", 0);
+        response.put("total", count * 3);
+        return MAPPER.writeValueAsBytes(response);
+    }
+
+    private static ObjectNode manga(Random random) {
+        String id = uuid(random);
+        ObjectNode manga = MAPPER.createObjectNode();
+        manga.put("id", id);
+        manga.put("type", "manga");
+
+        ObjectNode attributes = manga.putObject("attributes");
+        attributes.putObject("title").put("en", words(random, 4));
+        ArrayNode altTitles = attributes.putArray("altTitles");
+        for (String language : new String[] {"ja", "ja-ro", "ko", "zh", "es", "fr"}) {
+            altTitles.addObject().put(language, words(random, 4));
+        }
+        ObjectNode description = attributes.putObject("description");
+        for (String language : new String[] {"en", "es", "pt-br", "ru"}) {
+            description.put(language, words(random, 120));
+        }
+        attributes.put("isLocked", false);
+        ObjectNode links = attributes.putObject("links");
+        for (String site : new String[] {"al", "ap", "bw", "kt", "mu", "amz", "mal", "raw", "engtl"}) {
+            links.put(site, "https://example.org/" + site + "/" + random.nextInt(1000000));
+        }
+        attributes.put("originalLanguage", "ja");
+        attributes.put("lastVolume", "");
+        attributes.put("lastChapter", "");
+        attributes.put("publicationDemographic", "shounen");
+        attributes.put("status", "ongoing");
+        attributes.put("year", 2000 + random.nextInt(25));
+        attributes.put("contentRating", "safe");
+        ArrayNode tags = attributes.putArray("tags");
+        for (int i = 0; i < 8; i++) {
+            ObjectNode tag = tags.addObject();
+            tag.put("id", uuid(random));
+            tag.put("type", "tag");
+            ObjectNode tagAttributes = tag.putObject("attributes");
+            tagAttributes.putObject("name").put("en", words(random, 1));
+            tagAttributes.putObject("description");
+            tagAttributes.put("group", "genre");
+            tagAttributes.put("version", 1);
+            tag.putArray("relationships");
+        }
+        attributes.put("state", "published");
+        attributes.put("chapterNumbersResetOnNewVolume", false);
+        attributes.put("createdAt", "2021-04-19T21:59:45+00:00");
+        attributes.put("updatedAt", "2024-02-11T10:12:30+00:00");
+        attributes.put("version", 12);
+        ArrayNode languages = attributes.putArray("availableTranslatedLanguages");
+        languages.add("en").add("es-la").add("fr").add("pt-br");
+        attributes.put("latestUploadedChapter", uuid(random));
+
+        ArrayNode relationships = manga.putArray("relationships");
+        relationships.addObject().put("id", uuid(random)).put("type", "author");
+        relationships.addObject().put("id", uuid(random)).put("type", "artist");
+        ObjectNode cover = relationships.addObject().put("id", uuid(random)).put("type", "cover_art");
+        ObjectNode coverAttributes = cover.putObject("attributes");
+        coverAttributes.put("description", "");
+        coverAttributes.put("volume", "1");
+        coverAttributes.put("fileName", uuid(random) + ".jpg");
+        coverAttributes.put("locale", "ja");
+        coverAttributes.put("createdAt", "2021-04-19T21:59:45+00:00");
+        coverAttributes.put("updatedAt", "2021-04-19T21:59:45+00:00");
+        coverAttributes.put("version", 1);
+        return manga;
+    }
+
+    private static ObjectNode chapter(Random random, int number) {
+        ObjectNode chapter = MAPPER.createObjectNode();
+        chapter.put("id", uuid(random));
+        chapter.put("type", "chapter");
+        ObjectNode attributes = chapter.putObject("attributes");
+        attributes.put("volume", Integer.toString(number / 10 + 1));
+        attributes.put("chapter", Integer.toString(number + 1));
+        attributes.put("title", words(random, 3));
+        attributes.put("translatedLanguage", "en");
+        attributes.putNull("externalUrl");
+        attributes.put("publishAt", "2023-06-01T12:00:00+00:00");
+        attributes.put("readableAt", "2023-06-01T12:00:00+00:00");
+        attributes.put("createdAt", "2023-06-01T12:00:00+00:00");
+        attributes.put("updatedAt", "2023-06-02T08:30:00+00:00");
+        attributes.put("pages", 20 + random.nextInt(30));
+        attributes.put("version", 1);
+        ArrayNode relationships = chapter.putArray("relationships");
+        relationships.addObject().put("id", uuid(random)).put("type", "scanlation_group");
+        relationships.addObject().put("id", uuid(random)).put("type", "manga");
+        relationships.addObject().put("id", uuid(random)).put("type", "user");
+        return chapter;
+    }
+
+    private static String words(Random random, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            int length = 2 + random.nextInt(8);
+            for (int c = 0; c < length; c++) {
+                text.append((char) ('a' + random.nextInt(26)));
+            }
+        }
+        return text.toString();
+    }
+
+    private static String uuid(Random random) {
+        return new UUID(random.nextLong(), random.nextLong()).toString();
+    }
+}
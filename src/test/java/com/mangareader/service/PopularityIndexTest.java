@@ -0,0 +1,149 @@
+package com.mangareader.service;
+
+import com.mangareader.dto.MangaItemDTO;
+import com.mangareader.dto.PopularMangaResponseDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PopularityIndexTest {
+
+    private final PopularityIndex index = new PopularityIndex(2);
+
+    @Test
+    void pagesByOffsetMostFollowedFirstWithTiesById() {
+        index.replace(List.of(item("b", 10), item("a", 10), item("c", 30), item("d", 5), item("e", 20)));
+
+        PopularMangaResponseDTO first = index.page(2, 0, null, false);
+        assertThat(ids(first)).containsExactly("c", "e");
+        assertThat(first.getTotal()).isEqualTo(5);
+        assertThat(first.getNextCursor()).isNotNull();
+
+        assertThat(ids(index.page(2, 2, null, false))).containsExactly("a", "b");
+
+        PopularMangaResponseDTO last = index.page(2, 4, null, false);
+        assertThat(ids(last)).containsExactly("d");
+        assertThat(last.getNextCursor()).isNull();
+
+        assertThat(ids(index.page(2, 10, null, false))).isEmpty();
+    }
+
+    @Test
+    void descendingCursorsWalkTheWholeRanking() {
+        index.replace(List.of(item("b", 10), item("a", 10), item("c", 30), item("d", 5), item("e", 20)));
+
+        assertThat(walk(2, false)).containsExactly("c", "e", "a", "b", "d");
+    }
+
+    @Test
+    void ascendingPagesStartAtTheLeastFollowed() {
+        index.replace(List.of(item("b", 10), item("a", 10), item("c", 30), item("d", 5), item("e", 20)));
+
+        assertThat(ids(index.page(2, 0, null, true))).containsExactly("d", "b");
+        assertThat(ids(index.page(2, 2, null, true))).containsExactly("a", "e");
+        assertThat(walk(2, true)).containsExactly("d", "b", "a", "e", "c");
+        assertThat(walk(1, true)).containsExactly("d", "b", "a", "e", "c");
+    }
+
+    @Test
+    void cursorResumesAfterItsItemAcrossARebuild() {
+        index.replace(List.of(item("a", 50), item("b", 40), item("c", 30), item("d", 20), item("e", 10)));
+        String cursor = index.page(2, 0, null, false).getNextCursor();
+
+        // Two manga ranked above the cursor item appear; offset 2 would repeat "a" and "b"
+        index.replace(List.of(item("x", 90), item("y", 45), item("a", 50), item("b", 40), item("c", 30),
+                item("d", 20), item("e", 10)));
+
+        PopularMangaResponseDTO next = index.page(2, 0, cursor, false);
+        assertThat(ids(next)).containsExactly("c", "d");
+        assertThat(next.getOffset()).isEqualTo(4);
+    }
+
+    @Test
+    void cursorWhoseItemDisappearedResumesAtItsPosition() {
+        index.replace(List.of(item("a", 50), item("b", 40), item("c", 30), item("d", 20)));
+        String descending = index.page(2, 0, null, false).getNextCursor();
+        String ascending = index.page(2, 0, null, true).getNextCursor();
+
+        index.replace(List.of(item("a", 50), item("c", 30), item("d", 20)));
+
+        assertThat(ids(index.page(2, 0, descending, false))).containsExactly("c", "d");
+        assertThat(ids(index.page(2, 0, ascending, true))).containsExactly("a");
+    }
+
+    @Test
+    void cursorFollowsAFollowerCountChangeByValue() {
+        index.replace(List.of(item("a", 50), item("b", 40), item("c", 30), item("d", 20)));
+        String cursor = index.page(2, 0, null, false).getNextCursor();
+
+        // "b" gained followers; the cursor still points at its old place in the ranking
+        index.replace(List.of(item("b", 60), item("a", 50), item("c", 30), item("d", 20)));
+
+        assertThat(ids(index.page(2, 0, cursor, false))).containsExactly("c", "d");
+    }
+
+    @Test
+    void onlyTheTopKeepsDescriptions() {
+        index.replace(List.of(item("a", 30), item("b", 20), item("c", 10)));
+
+        List<MangaItemDTO> results = index.page(3, 0, null, false).getResults();
+        assertThat(results.get(0).getDescription()).isNotNull();
+        assertThat(results.get(1).getDescription()).isNotNull();
+        assertThat(results.get(2).getDescription()).isNull();
+        assertThat(results.get(2).getCoverUrl()).isEqualTo("cover-c");
+    }
+
+    @Test
+    void aCrawlOnlyHoldsTheDescriptionsOfItsCurrentTop() {
+        PopularityIndex.Crawl crawl = index.newCrawl();
+        crawl.add(item("c", 10));
+        crawl.add(item("a", 30));
+        crawl.add(item("d", 10));
+        crawl.add(item("b", 20));
+
+        assertThat(crawl.add(item("a", 99))).isFalse();
+        assertThat(crawl.size()).isEqualTo(4);
+        assertThat(crawl.values()).filteredOn(item -> item.getDescription() != null)
+                .extracting(MangaItemDTO::getId).containsExactlyInAnyOrder("a", "b");
+
+        index.replace(crawl.values());
+        assertThat(ids(index.page(4, 0, null, false))).containsExactly("a", "b", "c", "d");
+        assertThat(index.page(4, 0, null, false).getResults().get(0).getFollowers()).isEqualTo(30);
+    }
+
+    @Test
+    void rejectsMalformedCursors() {
+        index.replace(List.of(item("a", 30)));
+
+        assertThatThrownBy(() -> index.page(2, 0, "not a cursor!", false))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> index.page(2, 0, "bm8tc2VwYXJhdG9y", false))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /**
+     * Every ID of the ranking, following nextCursor from the first page
+     */
+    private List<String> walk(int limit, boolean ascending) {
+        List<String> seen = new ArrayList<>();
+        PopularMangaResponseDTO page = index.page(limit, 0, null, ascending);
+        seen.addAll(ids(page));
+        while (page.getNextCursor() != null) {
+            page = index.page(limit, 0, page.getNextCursor(), ascending);
+            seen.addAll(ids(page));
+        }
+        return seen;
+    }
+
+    private static List<String> ids(PopularMangaResponseDTO page) {
+        return page.getResults().stream().map(MangaItemDTO::getId).toList();
+    }
+
+    private static MangaItemDTO item(String id, int followers) {
+        return new MangaItemDTO(id, "Title " + id, "About " + id, followers, "cover-" + id);
+    }
+}
@@ -0,0 +1,80 @@
+package com.mangareader.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mangareader.client.UpstreamClient;
+import com.mangareader.client.UpstreamEndpoint;
+import com.mangareader.dto.mangadex.MangaDexStatisticsDTO.MangaStatistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StatisticsCacheTest {
+
+    private final UpstreamClient upstreamClient = mock(UpstreamClient.class);
+    private final StatisticsCache cache = new StatisticsCache(upstreamClient, new ObjectMapper(), 900, 21600, 2, 2, 1);
+
+    @AfterEach
+    void stopCache() {
+        cache.shutdown();
+    }
+
+    @Test
+    void bulkLookupsDoNotFillTheCache() throws IOException {
+        when(upstreamClient.getBytes(anyString(), eq(UpstreamEndpoint.API)))
+                .thenReturn(statistics("a", 10, "b", 20), statistics("c", 30));
+
+        Map<String, MangaStatistics> result = cache.getAllUncached(List.of("a", "b", "c"));
+
+        assertThat(result).containsOnlyKeys("a", "b", "c");
+        assertThat(result.get("c").getFollows()).isEqualTo(30);
+        assertThat(cache.getStats()).containsEntry("entries", 0).containsEntry("batches", 2L);
+        assertThat(cache.peekAll(List.of("a", "b", "c"))).isEmpty();
+    }
+
+    @Test
+    void bulkLookupsUseFreshCachedValuesWithoutRefreshingThem() throws IOException {
+        when(upstreamClient.getBytesAsync(contains("manga[]=hot"), eq(UpstreamEndpoint.API)))
+                .thenReturn(CompletableFuture.completedFuture(statistics("hot", 99)));
+        cache.getAllAsync(List.of("hot")).join();
+
+        Map<String, MangaStatistics> result = cache.getAllUncached(List.of("hot"));
+
+        assertThat(result.get("hot").getFollows()).isEqualTo(99);
+        verify(upstreamClient, never()).getBytes(anyString(), eq(UpstreamEndpoint.API));
+        assertThat(cache.getStats()).containsEntry("entries", 1).containsEntry("hits", 0L);
+    }
+
+    @Test
+    void aFailedBulkBatchLeavesItsIdsOut() throws IOException {
+        when(upstreamClient.getBytes(anyString(), eq(UpstreamEndpoint.API)))
+                .thenThrow(new IOException("Connection reset"));
+
+        assertThat(cache.getAllUncached(List.of("a", "b"))).isEmpty();
+    }
+
+    private static byte[] statistics(Object... idsAndFollows) {
+        StringBuilder json = new StringBuilder("{\"result\":\"ok\",\"statistics\":{");
+        for (int i = 0; i < idsAndFollows.length; i += 2) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append('"').append(idsAndFollows[i]).append("\":{\"follows\":").append(idsAndFollows[i + 1])
+                    .append('}');
+        }
+        return json.append("}}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
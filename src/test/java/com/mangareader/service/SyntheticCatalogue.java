@@ -0,0 +1,76 @@
+package com.mangareader.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A reproducible made-up catalogue for index tests and benchmarks. Titles are built
+ * from a small set of syllables, so words share prefixes and lie within a few edits
+ * of each other much like romanized titles do.
+ */
+final class SyntheticCatalogue {
+
+    private static final String[] SYLLABLES = {
+            "ka", "ri", "to", "su", "na", "me", "ro", "shi", "do", "ra",
+            "gon", "ha", "ya", "ku", "mi", "no", "sa", "te", "lo", "ve"};
+
+    private SyntheticCatalogue() {
+    }
+
+    /**
+     * One made-up manga: its ID, its titles (the first is the display title) and followers
+     */
+    static final class Manga {
+        final String id;
+        final List<String> titles;
+        final int followers;
+
+        Manga(String id, List<String> titles, int followers) {
+            this.id = id;
+            this.titles = titles;
+            this.followers = followers;
+        }
+    }
+
+    /**
+     * size manga with three titles of two to four words each
+     */
+    static List<Manga> generate(int size, long seed) {
+        Random random = new Random(seed);
+        List<Manga> catalogue = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            List<String> titles = new ArrayList<>();
+            for (int t = 0; t < 3; t++) {
+                StringBuilder title = new StringBuilder();
+                int words = 2 + random.nextInt(3);
+                for (int w = 0; w < words; w++) {
+                    if (w > 0) {
+                        title.append(' ');
+                    }
+                    int syllables = 2 + random.nextInt(3);
+                    for (int s = 0; s < syllables; s++) {
+                        title.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+                    }
+                }
+                titles.add(title.toString());
+            }
+            catalogue.add(new Manga("m" + i, titles, random.nextInt(100000)));
+        }
+        return catalogue;
+    }
+
+    static CatalogueIndex.Document toDocument(ObjectMapper mapper, Manga manga) {
+        ObjectNode node = mapper.createObjectNode();
+        node.put("id", manga.id);
+        node.put("title", manga.titles.get(0));
+        return new CatalogueIndex.Document(node, manga.titles, manga.followers);
+    }
+
+    static TitleSuggester.Entry toEntry(Manga manga) {
+        return new TitleSuggester.Entry(manga.id, manga.titles.get(0), manga.titles, manga.followers);
+    }
+}
@@ -0,0 +1,51 @@
+package com.mangareader.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Times TitleSuggester on a synthetic catalogue. Not run by the build; after
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/classpath.txt run
+ * java -cp target/classes:target/test-classes:$(cat target/classpath.txt)
+ * com.mangareader.service.TitleSuggesterBenchmark [catalogue size]
+ */
+final class TitleSuggesterBenchmark {
+
+    private static final String[] PREFIXES = {
+            "k", "ka", "kari", "karito su", "karitosu", "me", "shido", "zzz", "ra gon"};
+    private static final int WARMUP_ROUNDS = 50000;
+    private static final int SAMPLES = 5000;
+
+    private TitleSuggesterBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        List<TitleSuggester.Entry> entries = new ArrayList<>(size);
+        for (SyntheticCatalogue.Manga manga : SyntheticCatalogue.generate(size, 1)) {
+            entries.add(SyntheticCatalogue.toEntry(manga));
+        }
+
+        TitleSuggester suggester = new TitleSuggester();
+        long start = System.nanoTime();
+        suggester.replace(entries);
+        System.out.printf("%d manga, %d keys, built in %.0f ms%n",
+                size, suggester.keyCount(), (System.nanoTime() - start) / 1e6);
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            suggester.suggest(PREFIXES[i % PREFIXES.length], 10);
+        }
+        for (String prefix : PREFIXES) {
+            long[] times = new long[SAMPLES];
+            for (int i = 0; i < SAMPLES; i++) {
+                long before = System.nanoTime();
+                suggester.suggest(prefix, 10);
+                times[i] = System.nanoTime() - before;
+            }
+            Arrays.sort(times);
+            System.out.printf("%-10s p50 %6.1f us  p99 %6.1f us  p99.9 %6.1f us%n", prefix,
+                    times[SAMPLES / 2] / 1e3, times[SAMPLES * 99 / 100] / 1e3, times[SAMPLES * 999 / 1000] / 1e3);
+        }
+    }
+}
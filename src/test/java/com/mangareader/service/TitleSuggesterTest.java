@@ -0,0 +1,154 @@
+package com.mangareader.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TitleSuggesterTest {
+
+    private final TitleSuggester suggester = new TitleSuggester();
+
+    @BeforeEach
+    void buildSuggester() {
+        suggester.replace(List.of(
+                entry("dragon-ball", "Dragon Ball", 50),
+                entry("dragon-quest", "Dragon Quest", 80),
+                entry("dragon-maid", "Dragon Maid", 80),
+                entry("dr-stone", "Dr. Stone", 60),
+                entry("naruto", "Naruto", 500),
+                entry("attack", "Shingeki no Kyojin", 300, "Attack on Titan", "Shingeki no Kyojin: Dragon Edition"),
+                entry("pokemon", "Pokémon Adventures", 70)));
+    }
+
+    @Test
+    void suggestsTheMostFollowedFirstWithTiesById() {
+        assertThat(ids("dragon", 10)).containsExactly("dragon-maid", "dragon-quest", "dragon-ball");
+        assertThat(ids("dr", 10)).containsExactly("dragon-maid", "dragon-quest", "dr-stone", "dragon-ball");
+    }
+
+    @Test
+    void completesLaterWordsOfTheMainTitle() {
+        assertThat(ids("ball", 10)).containsExactly("dragon-ball");
+        assertThat(ids("no kyo", 10)).containsExactly("attack");
+    }
+
+    @Test
+    void completesAlternativeTitlesFromTheirStartOnly() {
+        assertThat(ids("attack on", 10)).containsExactly("attack");
+        assertThat(ids("titan", 10)).isEmpty();
+    }
+
+    @Test
+    void aMangaMatchedByManyKeysIsSuggestedOnce() {
+        // "Shingeki no Kyojin" matches as a main title, an alternative title and a word of both
+        assertThat(ids("shingeki", 10)).containsExactly("attack");
+        assertThat(ids("d", 10)).containsExactly("dragon-maid", "dragon-quest", "dr-stone", "dragon-ball");
+    }
+
+    @Test
+    void aMangaWithManyMatchingTitlesDoesNotCrowdOutOthers() {
+        List<String> titles = new ArrayList<>();
+        for (int i = 0; i < 3 * TitleSuggester.MAX_SUGGESTIONS; i++) {
+            titles.add("Dragon Edition " + i);
+        }
+        suggester.replace(List.of(
+                new TitleSuggester.Entry("many", "Dragon Saga", titles, 1000),
+                entry("dragon-ball", "Dragon Ball", 50),
+                entry("dragon-quest", "Dragon Quest", 80)));
+
+        assertThat(ids("dragon", 10)).containsExactly("many", "dragon-quest", "dragon-ball");
+    }
+
+    @Test
+    void ignoresCaseAccentsAndPunctuation() {
+        assertThat(ids("POKÉ", 10)).containsExactly("pokemon");
+        assertThat(ids("dr. st", 10)).containsExactly("dr-stone");
+    }
+
+    @Test
+    void returnsTheDisplayTitleAndFollowers() {
+        TitleSuggester.Suggestion suggestion = suggester.suggest("attack", 10).get(0);
+
+        assertThat(suggestion.getTitle()).isEqualTo("Shingeki no Kyojin");
+        assertThat(suggestion.getFollowers()).isEqualTo(300);
+    }
+
+    @Test
+    void honoursAndCapsTheLimit() {
+        assertThat(ids("dr", 2)).containsExactly("dragon-maid", "dragon-quest");
+        assertThat(ids("dr", 0)).isEmpty();
+
+        List<TitleSuggester.Entry> catalogue = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            catalogue.add(entry("m" + i, "Common Title " + i, i));
+        }
+        suggester.replace(catalogue);
+        assertThat(ids("common", 100)).hasSize(TitleSuggester.MAX_SUGGESTIONS).startsWith("m29", "m28");
+    }
+
+    @Test
+    void unknownOrEmptyPrefixesSuggestNothing() {
+        assertThat(ids("zzz", 10)).isEmpty();
+        assertThat(ids("", 10)).isEmpty();
+        assertThat(ids("  -?", 10)).isEmpty();
+        assertThat(ids(null, 10)).isEmpty();
+    }
+
+    @Test
+    void suggestsNothingBeforeTheFirstBuild() {
+        TitleSuggester empty = new TitleSuggester();
+
+        assertThat(empty.isReady()).isFalse();
+        assertThat(empty.suggest("dragon", 10)).isEmpty();
+    }
+
+    @Test
+    void topSuggestionsAgreeWithABruteForceScan() {
+        List<SyntheticCatalogue.Manga> catalogue = SyntheticCatalogue.generate(5000, 3);
+        List<TitleSuggester.Entry> entries = new ArrayList<>();
+        catalogue.forEach(manga -> entries.add(SyntheticCatalogue.toEntry(manga)));
+        suggester.replace(entries);
+
+        for (String prefix : List.of("k", "ka", "kari", "shi", "ra gon", "me", "veve", "tosu ka")) {
+            for (int limit : List.of(1, 5, 10, TitleSuggester.MAX_SUGGESTIONS)) {
+                List<String> expected = catalogue.stream()
+                        .filter(manga -> keys(manga).stream().anyMatch(key -> key.startsWith(prefix)))
+                        .sorted(Comparator.comparingInt((SyntheticCatalogue.Manga manga) -> -manga.followers)
+                                .thenComparing(manga -> manga.id))
+                        .limit(limit)
+                        .map(manga -> manga.id)
+                        .toList();
+
+                assertThat(ids(prefix, limit)).as(prefix + " limit " + limit).containsExactlyElementsOf(expected);
+            }
+        }
+    }
+
+    /**
+     * What a manga can be completed from: its titles and the main title from each word on
+     */
+    private static List<String> keys(SyntheticCatalogue.Manga manga) {
+        List<String> keys = new ArrayList<>();
+        manga.titles.forEach(title -> keys.add(TitleSuggester.normalizeTitle(title)));
+        List<String> words = CatalogueIndex.normalize(manga.titles.get(0));
+        for (int start = 0; start < words.size(); start++) {
+            keys.add(String.join(" ", words.subList(start, words.size())));
+        }
+        return keys;
+    }
+
+    private List<String> ids(String prefix, int limit) {
+        return suggester.suggest(prefix, limit).stream().map(TitleSuggester.Suggestion::getId).toList();
+    }
+
+    private static TitleSuggester.Entry entry(String id, String title, int followers, String... altTitles) {
+        List<String> titles = new ArrayList<>(List.of(title));
+        titles.addAll(List.of(altTitles));
+        return new TitleSuggester.Entry(id, title, titles, followers);
+    }
+}
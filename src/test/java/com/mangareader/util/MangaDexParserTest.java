@@ -0,0 +1,58 @@
+package com.mangareader.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MangaDexParserTest {
+
+    private static final String DETAIL = """
+            {"result": "ok", "data": {
+              "id": "m1", "type": "manga",
+              "attributes": {
+                "title": {"ja-ro": "Karitosu", "ja": "カリトス"},
+                "altTitles": [{"en": "Caritos"}],
+                "description": {"es": "Una historia", "fr": "Une histoire"},
+                "links": {"al": "1"},
+                "status": "ongoing", "year": 2020, "contentRating": "safe",
+                "tags": [{"id": "t1", "type": "tag", "attributes": {"name": {"en": "Action"}, "description": {}}}],
+                "createdAt": "2021-01-01T00:00:00+00:00", "updatedAt": "2022-01-01T00:00:00+00:00"
+              },
+              "relationships": [
+                {"id": "a1", "type": "author"},
+                {"id": "c1", "type": "cover_art", "attributes": {"fileName": "cover.jpg"}}
+              ]
+            }}
+            """;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final MangaDexParser parser = new MangaDexParser(mapper);
+
+    @Test
+    void streamingAndTreeParsesAgree() throws Exception {
+        ObjectNode streamed = parser.parseMangaDetail(DETAIL.getBytes(StandardCharsets.UTF_8), "http://proxy");
+        ObjectNode tree = parser.parseMangaDetail(mapper.readTree(DETAIL).path("data"), "http://proxy");
+
+        assertThat(streamed).isEqualTo(tree);
+        assertThat(tree.path("cover").asText()).isEqualTo("http://proxy/proxy/mangadex/cover/m1/cover.jpg");
+        assertThat(tree.path("tags").get(0).asText()).isEqualTo("Action");
+    }
+
+    @Test
+    void fallsBackToTheFirstLanguageWithoutEnglish() throws Exception {
+        ObjectNode manga = parser.parseMangaDetail(mapper.readTree(DETAIL).path("data"), null);
+
+        assertThat(manga.path("title").asText()).isEqualTo("Karitosu");
+        assertThat(manga.path("description").asText()).isEqualTo("Una historia");
+    }
+
+    @Test
+    void collectsEveryTitleOnce() throws Exception {
+        assertThat(parser.getAllTitles(mapper.readTree(DETAIL).path("data")))
+                .containsExactly("Karitosu", "カリトス", "Caritos");
+    }
+}